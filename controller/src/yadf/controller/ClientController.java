@@ -61,6 +61,7 @@ public class ClientController extends AbstractController {
 
     @Override
     public synchronized void doCommands(final Region region) {
+        region.makeCurrent();
         try {
             connection.writeObject(localCommands);
             @SuppressWarnings("unchecked")
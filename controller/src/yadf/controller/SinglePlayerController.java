@@ -48,6 +48,7 @@ public class SinglePlayerController extends AbstractController {
 
     @Override
     public synchronized void doCommands(final Region region) throws IOException {
+        region.makeCurrent();
         for (AbstractCommand command : localCommands) {
             Logger.getInstance().log(this, "Doing command " + command.getClass().getSimpleName());
             command.doCommand();
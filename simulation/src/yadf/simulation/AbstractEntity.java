@@ -31,6 +31,9 @@
  */
 package yadf.simulation;
 
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
 import yadf.simulation.map.MapArea;
 import yadf.simulation.map.MapIndex;
 
@@ -42,6 +45,9 @@ public abstract class AbstractEntity extends AbstractGameObject implements IEnti
     /** The area of the entity. */
     private MapArea area;
 
+    /** The move listeners. */
+    private final Set<IEntityMoveListener> moveListeners = new CopyOnWriteArraySet<>();
+
     /**
      * Instantiates a new entity.
      * @param positionTmp the position
@@ -65,9 +71,15 @@ public abstract class AbstractEntity extends AbstractGameObject implements IEnti
 
     @Override
     public void setPosition(final MapIndex positionTmp) {
+        if (area.pos.equals(positionTmp)) {
+            return;
+        }
         area.pos.x = positionTmp.x;
         area.pos.y = positionTmp.y;
         area.pos.z = positionTmp.z;
+        for (IEntityMoveListener listener : moveListeners) {
+            listener.entityMoved(this);
+        }
     }
 
     @Override
@@ -81,4 +93,16 @@ public abstract class AbstractEntity extends AbstractGameObject implements IEnti
         return index.x >= pos.x && index.x <= pos.x + area.width - 1 && index.y >= pos.y
                 && index.y <= pos.y + area.height - 1 && pos.z == index.z;
     }
+
+    @Override
+    public void addEntityMoveListener(final IEntityMoveListener listener) {
+        assert !moveListeners.contains(listener);
+        moveListeners.add(listener);
+    }
+
+    @Override
+    public void removeEntityMoveListener(final IEntityMoveListener listener) {
+        assert moveListeners.contains(listener);
+        moveListeners.remove(listener);
+    }
 }
@@ -1,17 +1,52 @@
 package yadf.simulation;
 
+import java.util.List;
+
+import yadf.simulation.map.MapArea;
 import yadf.simulation.map.MapIndex;
 
+/**
+ * An abstract entity manager, keeps a spatial index of the entities so they can be found by position.
+ * @param <T> the type of entity to manage
+ */
 public class AbstractEntityManager<T extends IEntity> extends AbstractGameObjectManager<T> implements
-        IEntityManager<T> {
+        IEntityManager<T>, IEntityMoveListener {
+
+    /** The spatial index of the entities. */
+    private final SpatialIndex<T> spatialIndex = new SpatialIndex<>();
 
     @Override
     public T getEntity(final MapIndex index) {
-        for (T entity : getGameObjects()) {
-            if (entity.getArea().containesIndex(index)) {
-                return entity;
-            }
-        }
-        return null;
+        return spatialIndex.getEntity(index);
+    }
+
+    @Override
+    public List<T> getEntities(final MapArea area) {
+        return spatialIndex.getEntities(area);
+    }
+
+    @Override
+    public List<T> getEntities(final MapIndex position, final int radius) {
+        return spatialIndex.getEntities(position, radius);
+    }
+
+    @Override
+    public void addGameObject(final T entity) {
+        super.addGameObject(entity);
+        spatialIndex.add(entity);
+        entity.addEntityMoveListener(this);
+    }
+
+    @Override
+    public void removeGameObject(final T entity) {
+        entity.removeEntityMoveListener(this);
+        spatialIndex.remove(entity);
+        super.removeGameObject(entity);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void entityMoved(final IEntity entity) {
+        spatialIndex.move((T) entity);
     }
 }
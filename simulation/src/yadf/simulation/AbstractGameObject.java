@@ -50,18 +50,14 @@ public abstract class AbstractGameObject implements IGameObject {
     /** The id. */
     private final int id;
 
-    /** The count. */
-    private static int count = 0;
-
     /** The listeners. */
     private Set<IGameObjectListener> listeners = new CopyOnWriteArraySet<>();
 
     /**
-     * Constructor.
+     * Constructor, the id is taken from the current id allocator of this thread.
      */
     public AbstractGameObject() {
-        id = count;
-        count++;
+        id = IdAllocator.getCurrent().allocate();
     }
 
     @Override
@@ -13,6 +13,9 @@ public abstract class AbstractGameObjectManager<T extends IGameObject> extends A
     /** The Game Objects. */
     private final List<T> gameObjects = new ArrayList<>();
 
+    /** The Game Objects, by id. */
+    private final IdMap<T> gameObjectsById = new IdMap<>();
+
     /** The Game Object Manager listeners, notified of add and remove of Game Object. */
     private final List<IGameObjectManagerListener<T>> managerListeners = new ArrayList<>();
 
@@ -66,19 +69,14 @@ public abstract class AbstractGameObjectManager<T extends IGameObject> extends A
     @SuppressWarnings("unchecked")
     @Override
     public void gameObjectDeleted(final IGameObject gameObject) {
-        if (gameObjects.contains(gameObject)) {
+        if (gameObjectsById.get(gameObject.getId()) == gameObject) {
             removeGameObject((T) gameObject);
         }
     }
 
     @Override
     public T getGameObject(final int id) {
-        for (T gameObject : gameObjects) {
-            if (gameObject.getId() == id) {
-                return gameObject;
-            }
-        }
-        return null;
+        return gameObjectsById.get(id);
     }
 
     @Override
@@ -91,6 +89,7 @@ public abstract class AbstractGameObjectManager<T extends IGameObject> extends A
         assert !gameObjects.contains(gameObject);
         gameObject.addGameObjectListener(this);
         gameObjects.add(gameObject);
+        gameObjectsById.put(gameObject.getId(), gameObject);
         notifyGameObjectAdded(gameObject);
         if (gameObject.isAvailable()) {
             notifyGameObjectAvailable(gameObject);
@@ -102,6 +101,7 @@ public abstract class AbstractGameObjectManager<T extends IGameObject> extends A
         assert gameObjects.contains(gameObject);
         gameObject.removeGameObjectListener(this);
         gameObjects.remove(gameObject);
+        gameObjectsById.remove(gameObject.getId());
         notifyGameObjectRemoved(gameObject);
     }
 
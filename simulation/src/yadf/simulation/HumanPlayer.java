@@ -66,7 +66,7 @@ public class HumanPlayer extends AbstractPlayer {
     private final JobManager jobManager = new JobManager();
 
     /** The stock manager. */
-    private final StockManager stockManager = new StockManager();
+    private final StockManager stockManager = new StockManager(this);
 
     /** The dwarf manager. */
     private final DwarfManager dwarfManager = new DwarfManager(this);
@@ -32,4 +32,16 @@ public interface IEntity extends IGameObject {
      * @return true, if successful
      */
     boolean containsIndex(final MapIndex index);
+
+    /**
+     * Add a listener to be notified when the entity moves.
+     * @param listener the listener
+     */
+    void addEntityMoveListener(IEntityMoveListener listener);
+
+    /**
+     * Remove a move listener.
+     * @param listener the listener
+     */
+    void removeEntityMoveListener(IEntityMoveListener listener);
 }
@@ -1,8 +1,26 @@
 package yadf.simulation;
 
+import java.util.List;
+
+import yadf.simulation.map.MapArea;
 import yadf.simulation.map.MapIndex;
 
 public interface IEntityManager<T extends IEntity> extends IGameObjectManager<T> {
 
     T getEntity(MapIndex position);
+
+    /**
+     * Get all the entities that overlap an area.
+     * @param area the area
+     * @return the entities
+     */
+    List<T> getEntities(MapArea area);
+
+    /**
+     * Get all the entities whose position is within a distance of a position.
+     * @param position the position
+     * @param radius the greatest distance
+     * @return the entities
+     */
+    List<T> getEntities(MapIndex position, int radius);
 }
@@ -0,0 +1,101 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out the ids of game objects.
+ * <p>
+ * Each region has its own allocator, so its ids only depend on the order its own objects were made in and are the
+ * same on every computer running the game. A thread makes its objects with the allocator that was last made current
+ * on it. Taking an id is lock free, so objects can be made on several threads at once.
+ * <p>
+ * Objects made on a thread that has no current allocator get negative ids, so they never clash with the ids of a
+ * region's objects.
+ */
+public class IdAllocator {
+
+    /** The allocator for objects made on a thread that has no current allocator. */
+    private static final IdAllocator DEFAULT_ALLOCATOR = new IdAllocator(-1, -1);
+
+    /** The current allocator of each thread. */
+    private static final ThreadLocal<IdAllocator> CURRENT_ALLOCATOR = new ThreadLocal<>();
+
+    /** The next id to hand out. */
+    private final AtomicInteger nextId;
+
+    /** How much the id changes by each time one is handed out. */
+    private final int increment;
+
+    /**
+     * Constructor, the ids start from 0.
+     */
+    public IdAllocator() {
+        this(0, 1);
+    }
+
+    /**
+     * Constructor.
+     * @param firstId the first id to hand out
+     * @param incrementTmp how much the id changes by each time one is handed out
+     */
+    private IdAllocator(final int firstId, final int incrementTmp) {
+        nextId = new AtomicInteger(firstId);
+        increment = incrementTmp;
+    }
+
+    /**
+     * Gets the current allocator of this thread.
+     * @return the allocator
+     */
+    public static IdAllocator getCurrent() {
+        IdAllocator allocator = CURRENT_ALLOCATOR.get();
+        return allocator != null ? allocator : DEFAULT_ALLOCATOR;
+    }
+
+    /**
+     * Make this the current allocator of this thread, the objects this thread makes from now on get their ids from
+     * it.
+     */
+    public void makeCurrent() {
+        CURRENT_ALLOCATOR.set(this);
+    }
+
+    /**
+     * Take the next id.
+     * @return the id
+     */
+    public int allocate() {
+        return nextId.getAndAdd(increment);
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation;
+
+import java.util.Arrays;
+
+/**
+ * A map from ids to objects, for finding a game object, job or player by id without looking through all of them.
+ * <p>
+ * The ids are kept in a plain int array with open addressing (linear probing), so looking up an id doesn't box it or
+ * follow a chain of entries.
+ * @param <T> the type of object
+ */
+public class IdMap<T> {
+
+    /** The number of slots to start with, must be a power of two. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The ids, by slot. */
+    private int[] ids = new int[INITIAL_CAPACITY];
+
+    /** The objects, by slot, null if the slot is empty. */
+    private Object[] values = new Object[INITIAL_CAPACITY];
+
+    /** The number of objects in the map. */
+    private int size;
+
+    /**
+     * Get the object with an id.
+     * @param id the id
+     * @return the object, null if there is no object with the id
+     */
+    @SuppressWarnings("unchecked")
+    public T get(final int id) {
+        int mask = ids.length - 1;
+        for (int slot = getSlot(id, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (ids[slot] == id) {
+                return (T) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Put an object in the map, replacing any object with the same id.
+     * @param id the id
+     * @param value the object
+     */
+    public void put(final int id, final T value) {
+        assert value != null;
+        // Keep the map at most half full so the runs of used slots stay short
+        if ((size + 1) * 2 > ids.length) {
+            resize(ids.length * 2);
+        }
+        int mask = ids.length - 1;
+        int slot = getSlot(id, mask);
+        while (values[slot] != null) {
+            if (ids[slot] == id) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        ids[slot] = id;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Remove the object with an id.
+     * @param id the id
+     */
+    public void remove(final int id) {
+        int mask = ids.length - 1;
+        int slot = getSlot(id, mask);
+        while (values[slot] != null && ids[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == null) {
+            return;
+        }
+        // Move later objects in the run back into the gap, so a run never has a hole in it
+        int gap = slot;
+        for (int next = (gap + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+            int home = getSlot(ids[next], mask);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                ids[gap] = ids[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = null;
+        size--;
+    }
+
+    /**
+     * Gets the number of objects in the map.
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Remove all the objects.
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * Move all the objects into a new set of slots.
+     * @param capacity the new number of slots, must be a power of two
+     */
+    @SuppressWarnings("unchecked")
+    private void resize(final int capacity) {
+        int[] oldIds = ids;
+        Object[] oldValues = values;
+        ids = new int[capacity];
+        values = new Object[capacity];
+        size = 0;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldIds[i], (T) oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * Gets the slot that an id would be in if there were no collisions.
+     * @param id the id
+     * @param mask the number of slots minus one
+     * @return the slot
+     */
+    private static int getSlot(final int id, final int mask) {
+        // Ids are handed out in order, so mix the bits to spread neighbouring ids out
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -47,15 +47,21 @@ import yadf.simulation.tree.TreeManager;
  */
 public class Region implements IRegion {
 
+    /** Hands out the ids of the game objects in this region. */
+    private final IdAllocator idAllocator = new IdAllocator();
+
     /** The Map of this region. */
     private final RegionMap map = new RegionMap();
 
     /** The tree manager for this region. */
-    private final TreeManager treeManager = new TreeManager(this);
+    private final TreeManager treeManager;
 
     /** A vector of all the players in this region. */
     private final Set<IPlayer> players = new LinkedHashSet<>();
 
+    /** The players, by id. */
+    private final IdMap<IPlayer> playersById = new IdMap<>();
+
     /** The time. */
     private long time;
 
@@ -65,12 +71,29 @@ public class Region implements IRegion {
     /** Is it paused? */
     private boolean paused = false;
 
+    /**
+     * Constructor, makes the region current on this thread.
+     */
+    public Region() {
+        makeCurrent();
+        treeManager = new TreeManager(this);
+    }
+
+    /**
+     * Make this the current region of this thread, the game objects this thread makes from now on get their ids from
+     * this region.
+     */
+    public void makeCurrent() {
+        idAllocator.makeCurrent();
+    }
+
     /**
      * Setup the region.
      * @param regionSize the size of the region
      */
     public void setup(final MapIndex regionSize) {
         Logger.getInstance().log(this, "Setting up");
+        makeCurrent();
         map.generateMap(regionSize);
         treeManager.addTrees();
     }
@@ -82,6 +105,7 @@ public class Region implements IRegion {
     public void addPlayer(final IPlayer player) {
         Logger.getInstance().log(this, "Adding player " + player.getName());
         players.add(player);
+        playersById.put(player.getId(), player);
     }
 
     @Override
@@ -100,12 +124,7 @@ public class Region implements IRegion {
      * @return the player
      */
     public IPlayer getPlayer(final int playerId) {
-        for (IPlayer player : players) {
-            if (player.getId() == playerId) {
-                return player;
-            }
-        }
-        return null;
+        return playersById.get(playerId);
     }
 
     @Override
@@ -128,6 +147,9 @@ public class Region implements IRegion {
      * Update.
      */
     public void update() {
+        makeCurrent();
+        // Paths requested last step are found between steps
+        map.getPathService().finishRequests();
         if (!paused) {
             time++;
             if (timeListeners.containsKey(time)) {
@@ -139,6 +161,7 @@ public class Region implements IRegion {
                 player.update();
             }
         }
+        map.getPathService().startRequests();
     }
 
     /**
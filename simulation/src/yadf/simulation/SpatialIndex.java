@@ -0,0 +1,299 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import yadf.simulation.map.MapArea;
+import yadf.simulation.map.MapIndex;
+
+/**
+ * Finds entities by position without looking at every entity.
+ * <p>
+ * The map is split into columns of cells, each one level high, and each entity is put in a bucket for every cell that
+ * its area covers. A query only has to look in the buckets of the cells it covers.
+ * @param <T> the type of entity to index
+ */
+public class SpatialIndex<T extends IEntity> {
+
+    /** Log2 of how many blocks along each side of a cell. */
+    private static final int CELL_SHIFT = 3;
+
+    /** The number of bits used for each part of a cell key. */
+    private static final int KEY_BITS = 21;
+
+    /** Mask for each part of a cell key. */
+    private static final long KEY_MASK = (1L << KEY_BITS) - 1;
+
+    /** The entities in each cell, by cell key. */
+    private final Map<Long, List<T>> buckets = new HashMap<>();
+
+    /** The area that each entity was indexed with, so it can be found again after it has moved. */
+    private final Map<T, MapArea> indexedAreas = new HashMap<>();
+
+    /** The lowest position that any entity has been indexed at, queries don't have to look any lower. */
+    private final MapIndex lowerBound = new MapIndex(Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+    /** The highest position that any entity has been indexed at, queries don't have to look any higher. */
+    private final MapIndex upperBound = new MapIndex(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE);
+
+    /**
+     * Add an entity to the index.
+     * @param entity the entity
+     */
+    public void add(final T entity) {
+        assert !indexedAreas.containsKey(entity);
+        MapArea area = entity.getArea();
+        indexedAreas.put(entity, area);
+        addToBuckets(entity, area);
+    }
+
+    /**
+     * Remove an entity from the index.
+     * @param entity the entity
+     */
+    public void remove(final T entity) {
+        MapArea area = indexedAreas.remove(entity);
+        if (area != null) {
+            removeFromBuckets(entity, area);
+        }
+    }
+
+    /**
+     * Move an entity to the buckets for its current area, if it covers different cells than it used to.
+     * @param entity the entity
+     */
+    public void move(final T entity) {
+        MapArea oldArea = indexedAreas.get(entity);
+        if (oldArea == null) {
+            return;
+        }
+        MapArea newArea = entity.getArea();
+        indexedAreas.put(entity, newArea);
+        if (!coversSameCells(oldArea, newArea)) {
+            removeFromBuckets(entity, oldArea);
+            addToBuckets(entity, newArea);
+        }
+    }
+
+    /**
+     * Get an entity that contains a position.
+     * @param position the position
+     * @return the entity, null if there is none
+     */
+    public T getEntity(final MapIndex position) {
+        List<T> bucket = buckets.get(getKey(position.x >> CELL_SHIFT, position.y >> CELL_SHIFT, position.z));
+        if (bucket != null) {
+            for (T entity : bucket) {
+                if (indexedAreas.get(entity).containesIndex(position)) {
+                    return entity;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get all the entities that overlap an area.
+     * @param area the area
+     * @return the entities
+     */
+    public List<T> getEntities(final MapArea area) {
+        Set<T> entities = new LinkedHashSet<>();
+        int minX = area.pos.x >> CELL_SHIFT;
+        int maxX = (area.pos.x + area.width - 1) >> CELL_SHIFT;
+        int minY = area.pos.y >> CELL_SHIFT;
+        int maxY = (area.pos.y + area.height - 1) >> CELL_SHIFT;
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                List<T> bucket = buckets.get(getKey(x, y, area.pos.z));
+                if (bucket == null) {
+                    continue;
+                }
+                for (T entity : bucket) {
+                    if (indexedAreas.get(entity).operlapsArea(area)) {
+                        entities.add(entity);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(entities);
+    }
+
+    /**
+     * Get all the entities whose position is within a distance of a position.
+     * @param position the position
+     * @param radius the greatest distance (the same as MapIndex.distance) that an entity can be from the position
+     * @return the entities
+     */
+    public List<T> getEntities(final MapIndex position, final int radius) {
+        List<T> entities = new ArrayList<>();
+        int minZ = Math.max(position.z - radius, lowerBound.z);
+        int maxZ = Math.min(position.z + radius, upperBound.z);
+        for (int z = minZ; z <= maxZ; z++) {
+            // The further away the level, the less of it is within the radius
+            int levelRadius = radius - Math.abs(z - position.z);
+            int minX = Math.max(position.x - levelRadius, lowerBound.x) >> CELL_SHIFT;
+            int maxX = Math.min(position.x + levelRadius, upperBound.x) >> CELL_SHIFT;
+            int minY = Math.max(position.y - levelRadius, lowerBound.y) >> CELL_SHIFT;
+            int maxY = Math.min(position.y + levelRadius, upperBound.y) >> CELL_SHIFT;
+            for (int x = minX; x <= maxX; x++) {
+                for (int y = minY; y <= maxY; y++) {
+                    List<T> bucket = buckets.get(getKey(x, y, z));
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (T entity : bucket) {
+                        MapIndex entityPosition = indexedAreas.get(entity).pos;
+                        // An entity that covers several cells is only taken from the cell its position is in
+                        if ((entityPosition.x >> CELL_SHIFT) == x && (entityPosition.y >> CELL_SHIFT) == y
+                                && entityPosition.distance(position) <= radius) {
+                            entities.add(entity);
+                        }
+                    }
+                }
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Get the entity whose position is nearest to a position.
+     * @param position the position
+     * @return the entity, null if there are no entities
+     */
+    public T getNearestEntity(final MapIndex position) {
+        if (indexedAreas.isEmpty()) {
+            return null;
+        }
+        // No entity can be further away than the furthest corner of the bounds
+        int furthestDistance = Math.max(Math.abs(position.x - lowerBound.x), Math.abs(position.x - upperBound.x))
+                + Math.max(Math.abs(position.y - lowerBound.y), Math.abs(position.y - upperBound.y))
+                + Math.max(Math.abs(position.z - lowerBound.z), Math.abs(position.z - upperBound.z));
+        // Look in a bigger and bigger radius until something is found, anything outside the radius is further away
+        // than anything inside it
+        for (int radius = 1 << CELL_SHIFT;; radius *= 2) {
+            T nearestEntity = null;
+            int nearestDistance = Integer.MAX_VALUE;
+            for (T entity : getEntities(position, Math.min(radius, furthestDistance))) {
+                int distance = indexedAreas.get(entity).pos.distance(position);
+                if (distance < nearestDistance) {
+                    nearestEntity = entity;
+                    nearestDistance = distance;
+                }
+            }
+            if (nearestEntity != null || radius >= furthestDistance) {
+                return nearestEntity;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of entities in the index.
+     * @return the number of entities
+     */
+    public int size() {
+        return indexedAreas.size();
+    }
+
+    /**
+     * Put an entity in the bucket of every cell that an area covers.
+     * @param entity the entity
+     * @param area the area
+     */
+    private void addToBuckets(final T entity, final MapArea area) {
+        lowerBound.x = Math.min(lowerBound.x, area.pos.x);
+        lowerBound.y = Math.min(lowerBound.y, area.pos.y);
+        lowerBound.z = Math.min(lowerBound.z, area.pos.z);
+        upperBound.x = Math.max(upperBound.x, area.pos.x + area.width - 1);
+        upperBound.y = Math.max(upperBound.y, area.pos.y + area.height - 1);
+        upperBound.z = Math.max(upperBound.z, area.pos.z);
+        for (int x = area.pos.x >> CELL_SHIFT; x <= (area.pos.x + area.width - 1) >> CELL_SHIFT; x++) {
+            for (int y = area.pos.y >> CELL_SHIFT; y <= (area.pos.y + area.height - 1) >> CELL_SHIFT; y++) {
+                Long key = getKey(x, y, area.pos.z);
+                List<T> bucket = buckets.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<>();
+                    buckets.put(key, bucket);
+                }
+                bucket.add(entity);
+            }
+        }
+    }
+
+    /**
+     * Take an entity out of the bucket of every cell that an area covers.
+     * @param entity the entity
+     * @param area the area
+     */
+    private void removeFromBuckets(final T entity, final MapArea area) {
+        for (int x = area.pos.x >> CELL_SHIFT; x <= (area.pos.x + area.width - 1) >> CELL_SHIFT; x++) {
+            for (int y = area.pos.y >> CELL_SHIFT; y <= (area.pos.y + area.height - 1) >> CELL_SHIFT; y++) {
+                Long key = getKey(x, y, area.pos.z);
+                List<T> bucket = buckets.get(key);
+                bucket.remove(entity);
+                if (bucket.isEmpty()) {
+                    buckets.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if two areas cover the same cells.
+     * @param area1 the first area
+     * @param area2 the second area
+     * @return true if they do
+     */
+    private static boolean coversSameCells(final MapArea area1, final MapArea area2) {
+        return area1.pos.z == area2.pos.z && area1.pos.x >> CELL_SHIFT == area2.pos.x >> CELL_SHIFT
+                && area1.pos.y >> CELL_SHIFT == area2.pos.y >> CELL_SHIFT
+                && (area1.pos.x + area1.width - 1) >> CELL_SHIFT == (area2.pos.x + area2.width - 1) >> CELL_SHIFT
+                && (area1.pos.y + area1.height - 1) >> CELL_SHIFT == (area2.pos.y + area2.height - 1) >> CELL_SHIFT;
+    }
+
+    /**
+     * Gets the key of a cell.
+     * @param x the x position of the cell
+     * @param y the y position of the cell
+     * @param z the z position of the cell
+     * @return the key
+     */
+    private static long getKey(final int x, final int y, final int z) {
+        return (x & KEY_MASK) << (KEY_BITS * 2) | (y & KEY_MASK) << KEY_BITS | (z & KEY_MASK);
+    }
+}
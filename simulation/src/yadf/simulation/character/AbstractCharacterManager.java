@@ -1,6 +1,9 @@
 package yadf.simulation.character;
 
-import yadf.simulation.AbstractGameObjectManager;
+import java.util.ArrayList;
+import java.util.List;
+
+import yadf.simulation.AbstractEntityManager;
 import yadf.simulation.character.component.ISkillComponent;
 import yadf.simulation.labor.LaborType;
 import yadf.simulation.map.MapIndex;
@@ -8,19 +11,34 @@ import yadf.simulation.map.MapIndex;
 /**
  * An abstract character manager to provide implementations of the boring stuff.
  */
-public abstract class AbstractCharacterManager extends AbstractGameObjectManager<IGameCharacter> implements
+public abstract class AbstractCharacterManager extends AbstractEntityManager<IGameCharacter> implements
         ICharacterManager {
 
     @Override
     public IGameCharacter getCharacter(final MapIndex position, final int radius) {
-        IGameCharacter foundDwarf = null;
-        for (IGameCharacter dwarf : getGameObjects()) {
-            if (!dwarf.isDead() && dwarf.getPosition().distance(position) <= radius) {
-                foundDwarf = dwarf;
-                break;
+        for (IGameCharacter dwarf : getEntities(position, radius)) {
+            if (!dwarf.isDead()) {
+                return dwarf;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public IGameCharacter getNearestCharacter(final MapIndex position, final int radius) {
+        IGameCharacter nearestDwarf = null;
+        int nearestDistance = Integer.MAX_VALUE;
+        for (IGameCharacter dwarf : getEntities(position, radius)) {
+            if (dwarf.isDead()) {
+                continue;
+            }
+            int distance = dwarf.getPosition().distance(position);
+            if (distance < nearestDistance) {
+                nearestDwarf = dwarf;
+                nearestDistance = distance;
             }
         }
-        return foundDwarf;
+        return nearestDwarf;
     }
 
     /**
@@ -41,6 +59,18 @@ public abstract class AbstractCharacterManager extends AbstractGameObjectManager
         return null;
     }
 
+    @Override
+    public List<IGameCharacter> getIdleCharacters(final LaborType requiredLabor) {
+        List<IGameCharacter> idleDwarfs = new ArrayList<>();
+        for (IGameCharacter dwarf : getGameObjects()) {
+            if (!dwarf.isDead() && dwarf.isAvailable()
+                    && dwarf.getComponent(ISkillComponent.class).canDoJob(requiredLabor)) {
+                idleDwarfs.add(dwarf);
+            }
+        }
+        return idleDwarfs;
+    }
+
     @Override
     public void update() {
         for (IGameCharacter dwarf : getGameObjects()) {
@@ -1,6 +1,8 @@
 package yadf.simulation.character;
 
-import yadf.simulation.IGameObjectManager;
+import java.util.List;
+
+import yadf.simulation.IEntityManager;
 import yadf.simulation.IPlayerComponent;
 import yadf.simulation.labor.LaborType;
 import yadf.simulation.map.MapIndex;
@@ -8,7 +10,7 @@ import yadf.simulation.map.MapIndex;
 /**
  * Interface for the dwarf manager.
  */
-public interface ICharacterManager extends IGameObjectManager<IGameCharacter>, IPlayerComponent {
+public interface ICharacterManager extends IEntityManager<IGameCharacter>, IPlayerComponent {
 
     /**
      * Gets an idle character.
@@ -17,6 +19,13 @@ public interface ICharacterManager extends IGameObjectManager<IGameCharacter>, I
      */
     IGameCharacter getIdleCharacter(LaborType requiredLabor);
 
+    /**
+     * Gets all the idle characters that can do a labor.
+     * @param requiredLabor the labor that the characters need to have
+     * @return the characters
+     */
+    List<IGameCharacter> getIdleCharacters(LaborType requiredLabor);
+
     /**
      * Gets a character within a radius of a position.
      * @param position the position
@@ -25,6 +34,14 @@ public interface ICharacterManager extends IGameObjectManager<IGameCharacter>, I
      */
     IGameCharacter getCharacter(MapIndex position, int radius);
 
+    /**
+     * Gets the nearest character within a radius of a position.
+     * @param position the position
+     * @param radius the radius
+     * @return the nearest character, null if no character within radius
+     */
+    IGameCharacter getNearestCharacter(MapIndex position, int radius);
+
     /**
      * Update all the characters.
      */
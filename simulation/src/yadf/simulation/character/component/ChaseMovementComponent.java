@@ -31,12 +31,10 @@
  */
 package yadf.simulation.character.component;
 
-import java.util.List;
-
 import yadf.simulation.IRegion;
 import yadf.simulation.character.IGameCharacter;
+import yadf.simulation.map.MapIndex;
 import yadf.simulation.map.RegionMap;
-import yadf.simulation.map.WalkableNode;
 
 /**
  * The Class ChaseMoveComponent.
@@ -74,35 +72,16 @@ public class ChaseMovementComponent extends AbstractMoveComponent implements IMo
         fallDown(map);
         checkBlocked(map);
 
-        // TODO: this should plan paths
         simulationSteps++;
         if (simulationSteps > walkSpeed) {
-            List<WalkableNode> adjacencies = map.getAdjacencies(getCharacter().getPosition());
-
-            // Find adjacency that is closest to target dwarf
-            WalkableNode bestNode = null;
-            int bestDistance = Integer.MAX_VALUE;
-
-            for (WalkableNode node : adjacencies) {
-                int distance = node.distance(pursuee.getPosition());
-
-                if (bestNode == null) {
-                    bestNode = node;
-                    bestDistance = distance;
-                } else {
-                    if (distance < bestDistance) {
-                        bestNode = node;
-                        bestDistance = distance;
-                    }
-                }
-            }
-            if (bestNode != null) {
-                getCharacter().setPosition(bestNode);
+            MapIndex nextPosition = map.getPursuitStep(getCharacter().getPosition(), pursuee.getPosition());
+            if (nextPosition != null) {
+                getCharacter().setPosition(nextPosition);
                 simulationSteps = 0;
-            }
-            // TODO: this 1 should be HIT_DISTANCE from MilitaryStationJob
-            if (bestDistance <= 1) {
-                notifyListeners();
+                // TODO: this 1 should be HIT_DISTANCE from MilitaryStationJob
+                if (nextPosition.distance(pursuee.getPosition()) <= 1) {
+                    notifyListeners();
+                }
             }
         }
     }
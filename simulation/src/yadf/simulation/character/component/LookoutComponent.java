@@ -6,6 +6,7 @@ import yadf.simulation.IPlayer;
 import yadf.simulation.IRegion;
 import yadf.simulation.character.ICharacterManager;
 import yadf.simulation.character.IGameCharacter;
+import yadf.simulation.map.MapIndex;
 
 /**
  * The lookout component.
@@ -17,34 +18,52 @@ public class LookoutComponent extends AbstractCharacterComponent implements ILoo
     /** How far can the soldier see. */
     private static final int VIEW_DISTANCE = 20;
 
+    /** How many simulation steps between each look for an enemy. */
+    private static final int SCAN_INTERVAL = 8;
+
     /** The enemy that was spotted. */
     private IGameCharacter enemy;
 
+    /** How many simulation steps until the next look for an enemy. */
+    private int stepsUntilScan;
+
     /**
      * Constructor.
      * @param soldier the dwarf that is looking for an enemy
      */
     public LookoutComponent(final IGameCharacter soldier) {
         super(soldier);
+        // Spread the soldiers out so they don't all look on the same step, ids can be negative
+        stepsUntilScan = 1 + Math.floorMod(soldier.getId(), SCAN_INTERVAL);
     }
 
     @Override
     public void update(final IRegion region) {
+        if (--stepsUntilScan > 0) {
+            return;
+        }
+        stepsUntilScan = SCAN_INTERVAL;
         IGameCharacter soldier = getCharacter();
+        MapIndex position = soldier.getPosition();
         Set<IPlayer> players = soldier.getRegion().getPlayers();
+        IGameCharacter nearestEnemy = null;
+        int nearestDistance = Integer.MAX_VALUE;
         // TODO: change to get getMilitaryManager().getEnemys()
         for (IPlayer player : players) {
             if (player == soldier.getPlayer()) {
                 continue;
             }
-            IGameCharacter enemyTmp = player.getComponent(ICharacterManager.class).getCharacter(soldier.getPosition(),
+            IGameCharacter enemyTmp = player.getComponent(ICharacterManager.class).getNearestCharacter(position,
                     VIEW_DISTANCE);
-            if (enemyTmp != null) {
-                enemy = enemyTmp;
-                notifyListeners();
-                break;
+            if (enemyTmp != null && enemyTmp.getPosition().distance(position) < nearestDistance) {
+                nearestEnemy = enemyTmp;
+                nearestDistance = enemyTmp.getPosition().distance(position);
             }
         }
+        if (nearestEnemy != null) {
+            enemy = nearestEnemy;
+            notifyListeners();
+        }
     }
 
     /**
@@ -31,13 +31,17 @@
  */
 package yadf.simulation.character.component;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import yadf.simulation.IRegion;
 import yadf.simulation.character.IGameCharacter;
 import yadf.simulation.map.MapIndex;
+import yadf.simulation.map.PathService;
+import yadf.simulation.map.PathTicket;
 import yadf.simulation.map.RegionMap;
-import yadf.simulation.map.WalkableNode;
 
 /**
  * The Class WalkMoveComponent.
@@ -47,6 +51,12 @@ public class WalkMovementComponent extends AbstractMoveComponent implements IMov
     /** How many simulation steps between walking steps. */
     private static final long WALK_SPEED = IRegion.SIMULATION_STEPS_PER_MINUTE * 10;
 
+    /** How far from the dwarf a detour around a blocked path can go. */
+    private static final int REPAIR_RADIUS = 4;
+
+    /** How many steps further along the path a detour can join it again. */
+    private static final int REPAIR_LOOKAHEAD = 8;
+
     /** Where to go. */
     private final MapIndex target;
 
@@ -56,6 +66,15 @@ public class WalkMovementComponent extends AbstractMoveComponent implements IMov
     /** The path that the dwarf is walking along. */
     private List<MapIndex> path = null;
 
+    /** The path that has been requested from the path service, null if there is no request waiting. */
+    private PathTicket pathRequest = null;
+
+    /** Where the dwarf was when the path was requested. */
+    private MapIndex pathRequestStart = null;
+
+    /** True if the path ends before the target, so the next part has to be found when the dwarf gets to its end. */
+    private boolean partialPath = false;
+
     /** How far along the path the dwarf is. */
     private int pathIndex = 0;
 
@@ -119,13 +138,28 @@ public class WalkMovementComponent extends AbstractMoveComponent implements IMov
         fallDown(map);
         checkBlocked(map);
 
-        if (checkArrived()) {
+        if (checkArrived(map)) {
             notifyListeners();
             return;
         }
 
         if (path == null) {
-            if (!getPath(map)) {
+            if (pathRequest == null && !requestPath(map)) {
+                notifyListeners();
+                return;
+            }
+            // Wait until the path service has found the path
+            if (!pathRequest.isDone()) {
+                return;
+            }
+            if (!getPath()) {
+                if (noPath) {
+                    notifyListeners();
+                }
+                return;
+            }
+            // An empty path means the dwarf is already at one of the goals
+            if (checkArrived(map)) {
                 notifyListeners();
                 return;
             }
@@ -136,18 +170,22 @@ public class WalkMovementComponent extends AbstractMoveComponent implements IMov
 
     /**
      * Check arrived.
+     * @param map the map
      * @return true, if successful
      */
-    private boolean checkArrived() {
+    private boolean checkArrived(final RegionMap map) {
+        // The end of a path that goes all the way to the goals
+        if (path != null && pathIndex < 0) {
+            arrived = true;
+            return true;
+        }
         MapIndex position = getCharacter().getPosition();
         if (nextTo) {
-            for (int x = target.x - 1; x <= target.x + 1; x++) {
-                for (int y = target.y - 1; y <= target.y + 1; y++) {
-                    if (!(x == target.x && y == target.y) && position.equals(new MapIndex(x, y, target.z))) {
-                        arrived = true;
-                        return true;
-                    }
-                }
+            // Only the adjacencies of the target are goals, they include ramps and stairs a level above or below it
+            if (Math.abs(position.x - target.x) <= 1 && Math.abs(position.y - target.y) <= 1
+                    && Math.abs(position.z - target.z) <= 1 && map.getAdjacencies(target).contains(position)) {
+                arrived = true;
+                return true;
             }
         } else {
             if (position.equals(target)) {
@@ -155,38 +193,59 @@ public class WalkMovementComponent extends AbstractMoveComponent implements IMov
                 return true;
             }
         }
-        if (pathIndex < 0) {
-            return true;
-        }
         return false;
     }
 
     /**
-     * Gets the path.
+     * Request a path from the path service.
      * @param map the map
-     * @return the path
+     * @return true, if the path was requested, if not no path is set if none of the goals can be reached
      */
-    private boolean getPath(final RegionMap map) {
-        if (map.getWalkableNode(getCharacter().getPosition()) == null) {
+    private boolean requestPath(final RegionMap map) {
+        MapIndex position = getCharacter().getPosition();
+        if (map.getWalkableNode(position) == null) {
             return false;
         }
+        Collection<? extends MapIndex> candidates;
         if (nextTo) {
-            List<WalkableNode> adjacencies = map.getAdjacencies(target);
-
-            for (MapIndex adjacency : adjacencies) {
-                path = map.findPath(getCharacter().getPosition(), adjacency);
-                if (path != null) {
-                    break;
-                }
-            }
+            candidates = map.getAdjacencies(target);
         } else {
-            path = map.findPath(getCharacter().getPosition(), target);
+            candidates = Collections.singletonList(target);
         }
+        // Don't bother searching for goals that can't be reached
+        List<MapIndex> goals = new ArrayList<>();
+        for (MapIndex candidate : candidates) {
+            if (candidate != null && map.isReachable(position, candidate)) {
+                goals.add(candidate);
+            }
+        }
+        if (goals.isEmpty()) {
+            noPath = true;
+            return false;
+        }
+        pathRequestStart = new MapIndex(position);
+        pathRequest = map.getPathService().requestPath(pathRequestStart, goals, PathService.DEFAULT_PRIORITY);
+        return true;
+    }
+
+    /**
+     * Gets the path from a finished path request.
+     * @return true, if the dwarf has a path to walk along
+     */
+    private boolean getPath() {
+        path = pathRequest.getPath();
+        partialPath = pathRequest.isPartial();
+        pathRequest = null;
         // If the path is still null, there is no path available
         if (path == null) {
             noPath = true;
             return false;
         }
+        // The dwarf has been moved since the path was requested, so request a new one
+        if (!pathRequestStart.equals(getCharacter().getPosition())) {
+            path = null;
+            return false;
+        }
         pathIndex = path.size() - 1;
         return true;
     }
@@ -203,10 +262,44 @@ public class WalkMovementComponent extends AbstractMoveComponent implements IMov
             if (map.isWalkable(nextPosition)) {
                 getCharacter().setPosition(nextPosition);
                 pathIndex--;
-            } else {
+                // Long paths are only found a part at a time, so find the next part
+                if (pathIndex < 0 && partialPath) {
+                    path = null;
+                }
+            } else if (!repairPath(map)) {
                 path = null;
             }
             simulationSteps = 0;
         }
     }
+
+    /**
+     * The next position on the path is blocked, try to find a short detour around it that joins the path again a few
+     * steps further along, rather than finding a whole new path.
+     * @param map the map
+     * @return true, if the path was repaired
+     */
+    private boolean repairPath(final RegionMap map) {
+        List<MapIndex> rejoinPositions = new ArrayList<>();
+        for (int i = pathIndex - 1; i >= 0 && i >= pathIndex - REPAIR_LOOKAHEAD; i--) {
+            if (map.isWalkable(path.get(i))) {
+                rejoinPositions.add(path.get(i));
+            }
+        }
+        if (rejoinPositions.isEmpty()) {
+            return false;
+        }
+        List<MapIndex> detour = map.findLocalPath(getCharacter().getPosition(), rejoinPositions, REPAIR_RADIUS);
+        if (detour == null || detour.isEmpty()) {
+            return false;
+        }
+        // Both the path and the detour go from the end back to the start, so the detour replaces the start of the path
+        // up to where it joins
+        int rejoinIndex = path.subList(0, pathIndex).lastIndexOf(detour.get(0));
+        List<MapIndex> repairedPath = new ArrayList<>(path.subList(0, rejoinIndex));
+        repairedPath.addAll(detour);
+        path = repairedPath;
+        pathIndex = path.size() - 1;
+        return true;
+    }
 }
@@ -3,6 +3,7 @@ package yadf.simulation.item;
 import java.util.Set;
 
 import yadf.simulation.IGameObjectManager;
+import yadf.simulation.map.MapIndex;
 
 /**
  * Interface for an Item Manager.
@@ -27,6 +28,24 @@ public interface IItemManager extends IGameObjectManager<Item> {
      */
     Item getItemFromCategory(String category, boolean placed);
 
+    /**
+     * Finds the unplaced item of a type that is nearest to a position, but does not remove it from the container and
+     * does not set the item as used.
+     * @param itemType the type of item to find
+     * @param from the position to measure the distance from
+     * @return the nearest item, null if none could be found
+     */
+    Item getNearestItem(ItemType itemType, MapIndex from);
+
+    /**
+     * Finds the unplaced item from a category that is nearest to a position, but does not remove it from the container
+     * and does not set the item as used.
+     * @param category the category name
+     * @param from the position to measure the distance from
+     * @return the nearest item, null if none could be found
+     */
+    Item getNearestItemFromCategory(String category, MapIndex from);
+
     /**
      * Get the number of items in a category. From this container and any sub containers.
      * @param category the category
@@ -40,4 +59,12 @@ public interface IItemManager extends IGameObjectManager<Item> {
      * @return the item count
      */
     int getItemQuantity(ItemType itemType);
+
+    /**
+     * Place or unplace an item that is in this container, the item should be placed through its container rather than
+     * directly so the container can find it.
+     * @param item the item
+     * @param placed true to place the item, false to unplace it
+     */
+    void setItemPlaced(Item item, boolean placed);
 }
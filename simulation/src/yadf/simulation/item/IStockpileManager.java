@@ -3,14 +3,13 @@ package yadf.simulation.item;
 import java.util.Set;
 
 import yadf.simulation.IGameObjectManager;
+import yadf.simulation.map.MapIndex;
 
 /**
  * Interface for a stock manager.
  */
 public interface IStockpileManager extends IGameObjectManager<Stockpile> {
 
-    void removeItem(Item item);
-
     Item getItem(String itemTypeName);
 
     Item getItem(Set<ItemType> itemTypes);
@@ -19,6 +18,10 @@ public interface IStockpileManager extends IGameObjectManager<Stockpile> {
 
     Item getItemFromCategory(String category);
 
+    Item getNearestItem(ItemType itemType, MapIndex from);
+
+    Item getNearestItemFromCategory(String category, MapIndex from);
+
     int getItemQuantity(ItemType itemType);
 
     int getItemQuantity(String category);
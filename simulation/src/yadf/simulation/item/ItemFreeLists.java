@@ -0,0 +1,261 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.item;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import yadf.simulation.SpatialIndex;
+import yadf.simulation.map.MapIndex;
+
+/**
+ * Keeps the free items of a container (the ones that are available and not deleted) in lists by item type name and by
+ * category, so a free item can be found without looking at all the items.
+ * <p>
+ * Placed and unplaced items are kept in separate lists. Each list is kept in the order the items became free, so the
+ * item that has been free the longest is found first. The free unplaced items are also kept in spatial indexes by item
+ * type name and by category, so the nearest one can be found.
+ */
+class ItemFreeLists {
+
+    /** The free unplaced items, by item type name. */
+    private final Map<String, Set<Item>> unplacedByType = new HashMap<>();
+
+    /** The free placed items, by item type name. */
+    private final Map<String, Set<Item>> placedByType = new HashMap<>();
+
+    /** The free unplaced items, by category. */
+    private final Map<String, Set<Item>> unplacedByCategory = new HashMap<>();
+
+    /** The free placed items, by category. */
+    private final Map<String, Set<Item>> placedByCategory = new HashMap<>();
+
+    /** The positions of the free unplaced items, by item type name. */
+    private final Map<String, SpatialIndex<Item>> positionsByType = new HashMap<>();
+
+    /** The positions of the free unplaced items, by category. */
+    private final Map<String, SpatialIndex<Item>> positionsByCategory = new HashMap<>();
+
+    /**
+     * Put an item in the right lists for how it is now, or take it out of them if it is not free.
+     * @param item the item
+     */
+    void update(final Item item) {
+        remove(item);
+        if (item.isAvailable() && !item.isDeleted()) {
+            ItemType itemType = item.getType();
+            if (item.isPlaced()) {
+                getList(placedByType, itemType.name).add(item);
+                getList(placedByCategory, itemType.category).add(item);
+            } else {
+                getList(unplacedByType, itemType.name).add(item);
+                getList(unplacedByCategory, itemType.category).add(item);
+                getIndex(positionsByType, itemType.name).add(item);
+                getIndex(positionsByCategory, itemType.category).add(item);
+            }
+        }
+    }
+
+    /**
+     * Take an item out of all the lists.
+     * @param item the item
+     */
+    void remove(final Item item) {
+        ItemType itemType = item.getType();
+        removeFromList(unplacedByType, itemType.name, item);
+        removeFromList(placedByType, itemType.name, item);
+        removeFromList(unplacedByCategory, itemType.category, item);
+        removeFromList(placedByCategory, itemType.category, item);
+        removeFromIndex(positionsByType, itemType.name, item);
+        removeFromIndex(positionsByCategory, itemType.category, item);
+    }
+
+    /**
+     * An item has moved, so move it in the spatial indexes.
+     * @param item the item
+     */
+    void moved(final Item item) {
+        ItemType itemType = item.getType();
+        SpatialIndex<Item> index = positionsByType.get(itemType.name);
+        if (index != null) {
+            index.move(item);
+        }
+        index = positionsByCategory.get(itemType.category);
+        if (index != null) {
+            index.move(item);
+        }
+    }
+
+    /**
+     * Gets the free unplaced items of a type.
+     * @param itemTypeName the name of the item type
+     * @return the items, in the order they became free, must not be changed
+     */
+    Collection<Item> getUnplacedItems(final String itemTypeName) {
+        Set<Item> list = unplacedByType.get(itemTypeName);
+        return list != null ? Collections.unmodifiableSet(list) : Collections.<Item> emptySet();
+    }
+
+    /**
+     * Get a free item of a type.
+     * @param itemTypeName the name of the item type
+     * @param placed true to find a placed item
+     * @return the item, null if there is none
+     */
+    Item getItem(final String itemTypeName, final boolean placed) {
+        return getFirst(placed ? placedByType : unplacedByType, itemTypeName);
+    }
+
+    /**
+     * Get a free unplaced item of any of some types.
+     * @param itemTypes the item types
+     * @return the item, null if there is none
+     */
+    Item getItem(final Set<ItemType> itemTypes) {
+        for (ItemType itemType : itemTypes) {
+            Item item = getFirst(unplacedByType, itemType.name);
+            if (item != null) {
+                return item;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get a free item from a category.
+     * @param category the category
+     * @param placed true to find a placed item
+     * @return the item, null if there is none
+     */
+    Item getItemFromCategory(final String category, final boolean placed) {
+        return getFirst(placed ? placedByCategory : unplacedByCategory, category);
+    }
+
+    /**
+     * Get the free unplaced item of a type that is nearest to a position.
+     * @param itemTypeName the name of the item type
+     * @param from the position
+     * @return the item, null if there is none
+     */
+    Item getNearestItem(final String itemTypeName, final MapIndex from) {
+        SpatialIndex<Item> index = positionsByType.get(itemTypeName);
+        return index != null ? index.getNearestEntity(from) : null;
+    }
+
+    /**
+     * Get the free unplaced item from a category that is nearest to a position.
+     * @param category the category
+     * @param from the position
+     * @return the item, null if there is none
+     */
+    Item getNearestItemFromCategory(final String category, final MapIndex from) {
+        SpatialIndex<Item> index = positionsByCategory.get(category);
+        return index != null ? index.getNearestEntity(from) : null;
+    }
+
+    /**
+     * Get a list, creating it if it doesn't exist yet.
+     * @param lists the lists
+     * @param key the key of the list
+     * @return the list
+     */
+    private static Set<Item> getList(final Map<String, Set<Item>> lists, final String key) {
+        Set<Item> list = lists.get(key);
+        if (list == null) {
+            list = new LinkedHashSet<>();
+            lists.put(key, list);
+        }
+        return list;
+    }
+
+    /**
+     * Get a spatial index, creating it if it doesn't exist yet.
+     * @param indexes the spatial indexes
+     * @param key the key of the index
+     * @return the index
+     */
+    private static SpatialIndex<Item> getIndex(final Map<String, SpatialIndex<Item>> indexes, final String key) {
+        SpatialIndex<Item> index = indexes.get(key);
+        if (index == null) {
+            index = new SpatialIndex<>();
+            indexes.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Take an item out of a spatial index, if it is in it.
+     * @param indexes the spatial indexes
+     * @param key the key of the index
+     * @param item the item
+     */
+    private static void removeFromIndex(final Map<String, SpatialIndex<Item>> indexes, final String key,
+            final Item item) {
+        SpatialIndex<Item> index = indexes.get(key);
+        if (index != null) {
+            index.remove(item);
+        }
+    }
+
+    /**
+     * Take an item out of a list, if it is in it.
+     * @param lists the lists
+     * @param key the key of the list
+     * @param item the item
+     */
+    private static void removeFromList(final Map<String, Set<Item>> lists, final String key, final Item item) {
+        Set<Item> list = lists.get(key);
+        if (list != null) {
+            list.remove(item);
+        }
+    }
+
+    /**
+     * Get the first item of a list.
+     * @param lists the lists
+     * @param key the key of the list
+     * @return the item, null if the list is empty
+     */
+    private static Item getFirst(final Map<String, Set<Item>> lists, final String key) {
+        Set<Item> list = lists.get(key);
+        if (list == null) {
+            return null;
+        }
+        Iterator<Item> iterator = list.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+}
@@ -1,71 +1,101 @@
 package yadf.simulation.item;
 
+import java.util.Collection;
 import java.util.Set;
 
-import yadf.simulation.AbstractGameObjectManager;
+import yadf.simulation.AbstractEntityManager;
+import yadf.simulation.IEntity;
+import yadf.simulation.IGameObject;
+import yadf.simulation.map.MapIndex;
 
 /**
  * Item Manager.
  */
-public class ItemManager extends AbstractGameObjectManager<Item> implements IItemManager {
+public class ItemManager extends AbstractEntityManager<Item> implements IItemManager {
+
+    /** The number of items of each type and category. */
+    private final ItemQuantities quantities = new ItemQuantities();
+
+    /** The free items of each type and category. */
+    private final ItemFreeLists freeLists = new ItemFreeLists();
 
     @Override
-    public Item getItem(final String itemTypeName, final boolean placed) {
-        Item foundItem = null;
-        for (Item item : getGameObjects()) {
-            if (item.getType().name.equals(itemTypeName) && item.isAvailable() && item.isPlaced() == placed
-                    && !item.isDeleted()) {
-                foundItem = item;
-                break;
-            }
+    public void addGameObject(final Item item) {
+        // The item has to be free before the available listeners are told about it
+        freeLists.update(item);
+        super.addGameObject(item);
+        quantities.add(item);
+    }
+
+    @Override
+    public void removeGameObject(final Item item) {
+        // Only count items that were really in this manager
+        if (getGameObject(item.getId()) == item) {
+            quantities.remove(item);
+            freeLists.remove(item);
         }
-        return foundItem;
+        super.removeGameObject(item);
+    }
+
+    @Override
+    public void gameObjectChanged(final IGameObject gameObject) {
+        freeLists.update((Item) gameObject);
+        super.gameObjectChanged(gameObject);
+    }
+
+    @Override
+    public void setItemPlaced(final Item item, final boolean placed) {
+        item.setPlaced(placed);
+        freeLists.update(item);
+    }
+
+    @Override
+    public void entityMoved(final IEntity entity) {
+        super.entityMoved(entity);
+        freeLists.moved((Item) entity);
+    }
+
+    /**
+     * Gets the free unplaced items of a type, the ones that are available and not placed.
+     * @param itemType the item type
+     * @return the items, in the order they became free, must not be changed
+     */
+    Collection<Item> getFreeItems(final ItemType itemType) {
+        return freeLists.getUnplacedItems(itemType.name);
+    }
+
+    @Override
+    public Item getItem(final String itemTypeName, final boolean placed) {
+        return freeLists.getItem(itemTypeName, placed);
     }
 
     @Override
     public Item getItem(Set<ItemType> itemTypes) {
-        Item foundItem = null;
-        for (Item item : getGameObjects()) {
-            if (itemTypes.contains(item.getType()) && item.isAvailable() && !item.isPlaced() && !item.isDeleted()) {
-                foundItem = item;
-                break;
-            }
-        }
-        return foundItem;
+        return freeLists.getItem(itemTypes);
     }
 
     @Override
     public Item getItemFromCategory(final String category, final boolean placed) {
-        Item foundItem = null;
-        for (Item item : getGameObjects()) {
-            if (item.getType().category.equals(category) && !item.isDeleted() && item.isAvailable()
-                    && item.isPlaced() == placed) {
-                foundItem = item;
-                break;
-            }
-        }
-        return foundItem;
+        return freeLists.getItemFromCategory(category, placed);
+    }
+
+    @Override
+    public Item getNearestItem(final ItemType itemType, final MapIndex from) {
+        return freeLists.getNearestItem(itemType.name, from);
+    }
+
+    @Override
+    public Item getNearestItemFromCategory(final String category, final MapIndex from) {
+        return freeLists.getNearestItemFromCategory(category, from);
     }
 
     @Override
     public int getItemQuantity(final ItemType itemType) {
-        int count = 0;
-        for (Item item : getGameObjects()) {
-            if (item.getType().equals(itemType)) {
-                count++;
-            }
-        }
-        return count;
+        return quantities.getQuantity(itemType);
     }
 
     @Override
     public int getItemQuantity(final String category) {
-        int count = 0;
-        for (Item item : getGameObjects()) {
-            if (item.getType().category.equals(category)) {
-                count++;
-            }
-        }
-        return count;
+        return quantities.getQuantity(category);
     }
 }
@@ -0,0 +1,104 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.item;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the items in a container by item type and by category, so the quantities don't have to be counted again
+ * every time they are asked for.
+ */
+class ItemQuantities {
+
+    /** The number of items of each type, as a one element array so it can be changed in place. */
+    private final Map<ItemType, int[]> typeQuantities = new HashMap<>();
+
+    /** The number of items in each category. */
+    private final Map<String, int[]> categoryQuantities = new HashMap<>();
+
+    /**
+     * Count an item that has been added.
+     * @param item the item
+     */
+    void add(final Item item) {
+        change(item.getType(), 1);
+    }
+
+    /**
+     * Stop counting an item that has been removed.
+     * @param item the item
+     */
+    void remove(final Item item) {
+        change(item.getType(), -1);
+    }
+
+    /**
+     * Gets the number of items of a type.
+     * @param itemType the item type
+     * @return the quantity
+     */
+    int getQuantity(final ItemType itemType) {
+        int[] quantity = typeQuantities.get(itemType);
+        return quantity != null ? quantity[0] : 0;
+    }
+
+    /**
+     * Gets the number of items in a category.
+     * @param category the category
+     * @return the quantity
+     */
+    int getQuantity(final String category) {
+        int[] quantity = categoryQuantities.get(category);
+        return quantity != null ? quantity[0] : 0;
+    }
+
+    /**
+     * Change the quantity of an item type and its category.
+     * @param itemType the item type
+     * @param amount the amount to change by
+     */
+    private void change(final ItemType itemType, final int amount) {
+        int[] typeQuantity = typeQuantities.get(itemType);
+        if (typeQuantity == null) {
+            typeQuantity = new int[1];
+            typeQuantities.put(itemType, typeQuantity);
+        }
+        typeQuantity[0] += amount;
+        int[] categoryQuantity = categoryQuantities.get(itemType.category);
+        if (categoryQuantity == null) {
+            categoryQuantity = new int[1];
+            categoryQuantities.put(itemType.category, categoryQuantity);
+        }
+        categoryQuantity[0] += amount;
+    }
+}
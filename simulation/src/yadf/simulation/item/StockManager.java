@@ -37,6 +37,9 @@ import java.util.Set;
 import yadf.simulation.AbstractGameObject;
 import yadf.simulation.IGameObjectAvailableListener;
 import yadf.simulation.IGameObjectManagerListener;
+import yadf.simulation.IPlayer;
+import yadf.simulation.IdMap;
+import yadf.simulation.map.MapIndex;
 
 /**
  * The Class StockManager, manages items for a player including stockpiles.
@@ -47,7 +50,47 @@ public class StockManager extends AbstractGameObject implements IStockManager {
     private final ItemManager unstoredItemManager = new ItemManager();
 
     /** The Stockpile Manager. */
-    private final IStockpileManager stockpileManager = new StockpileManager();
+    private final StockpileManager stockpileManager;
+
+    /** The container that each item is in, by item id. */
+    private final IdMap<IItemManager> itemContainers = new IdMap<>();
+
+    /** The listeners that keep track of the items in each stockpile, by stockpile id. */
+    private final IdMap<ContainerListener> stockpileListeners = new IdMap<>();
+
+    /**
+     * Constructor.
+     * @param player the player that the items belong to
+     */
+    public StockManager(final IPlayer player) {
+        stockpileManager = new StockpileManager(unstoredItemManager, player);
+        unstoredItemManager.addManagerListener(new ContainerListener(unstoredItemManager));
+        stockpileManager.addManagerListener(new IGameObjectManagerListener<Stockpile>() {
+            @Override
+            public void gameObjectAdded(final Stockpile stockpile) {
+                ContainerListener listener = new ContainerListener(stockpile);
+                stockpileListeners.put(stockpile.getId(), listener);
+                stockpile.addManagerListener(listener);
+                for (Item item : stockpile.getGameObjects()) {
+                    itemContainers.put(item.getId(), stockpile);
+                }
+            }
+
+            @Override
+            public void gameObjectRemoved(final Stockpile stockpile) {
+                stockpile.removeManagerListener(stockpileListeners.get(stockpile.getId()));
+                stockpileListeners.remove(stockpile.getId());
+                for (Item item : stockpile.getGameObjects()) {
+                    itemContainers.remove(item.getId());
+                }
+            }
+
+            @Override
+            public void gameObjectAvailable(final Stockpile stockpile) {
+                // Do nothing
+            }
+        });
+    }
 
     @Override
     public void addGameObject(final Item item) {
@@ -56,10 +99,19 @@ public class StockManager extends AbstractGameObject implements IStockManager {
 
     @Override
     public void removeGameObject(final Item item) {
-        if (unstoredItemManager.getGameObject(item.getId()) != null) {
-            unstoredItemManager.removeGameObject(item);
+        IItemManager container = itemContainers.get(item.getId());
+        if (container != null) {
+            container.removeGameObject(item);
+        }
+    }
+
+    @Override
+    public void setItemPlaced(final Item item, final boolean placed) {
+        IItemManager container = itemContainers.get(item.getId());
+        if (container != null) {
+            container.setItemPlaced(item, placed);
         } else {
-            stockpileManager.removeItem(item);
+            item.setPlaced(placed);
         }
     }
 
@@ -95,6 +147,18 @@ public class StockManager extends AbstractGameObject implements IStockManager {
         return foundItem;
     }
 
+    @Override
+    public Item getNearestItem(final ItemType itemType, final MapIndex from) {
+        return StockpileManager.getNearer(unstoredItemManager.getNearestItem(itemType, from),
+                stockpileManager.getNearestItem(itemType, from), from);
+    }
+
+    @Override
+    public Item getNearestItemFromCategory(final String category, final MapIndex from) {
+        return StockpileManager.getNearer(unstoredItemManager.getNearestItemFromCategory(category, from),
+                stockpileManager.getNearestItemFromCategory(category, from), from);
+    }
+
     @Override
     public int getItemQuantity(final String category) {
         int count = unstoredItemManager.getItemQuantity(category);
@@ -111,7 +175,7 @@ public class StockManager extends AbstractGameObject implements IStockManager {
 
     @Override
     public void update() {
-        // Do nothing
+        stockpileManager.update();
     }
 
     @Override
@@ -146,10 +210,41 @@ public class StockManager extends AbstractGameObject implements IStockManager {
 
     @Override
     public Item getGameObject(final int id) {
-        Item foundItem = unstoredItemManager.getGameObject(id);
-        if (foundItem == null) {
-            foundItem = stockpileManager.getItem(id);
+        IItemManager container = itemContainers.get(id);
+        return container != null ? container.getGameObject(id) : null;
+    }
+
+    /**
+     * Keeps track of which items are in a container.
+     */
+    private class ContainerListener implements IGameObjectManagerListener<Item> {
+
+        /** The container. */
+        private final IItemManager container;
+
+        /**
+         * Constructor.
+         * @param containerTmp the container
+         */
+        ContainerListener(final IItemManager containerTmp) {
+            container = containerTmp;
+        }
+
+        @Override
+        public void gameObjectAdded(final Item item) {
+            itemContainers.put(item.getId(), container);
+        }
+
+        @Override
+        public void gameObjectRemoved(final Item item) {
+            if (itemContainers.get(item.getId()) == container) {
+                itemContainers.remove(item.getId());
+            }
+        }
+
+        @Override
+        public void gameObjectAvailable(final Item item) {
+            // Do nothing
         }
-        return foundItem;
     }
 }
@@ -31,13 +31,16 @@
  */
 package yadf.simulation.item;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
 import yadf.simulation.IEntity;
-import yadf.simulation.IGameObject;
-import yadf.simulation.IGameObjectAvailableListener;
+import yadf.simulation.IEntityMoveListener;
 import yadf.simulation.IPlayer;
+import yadf.simulation.character.IGameCharacter;
 import yadf.simulation.job.HaulJob;
 import yadf.simulation.job.IJob;
 import yadf.simulation.job.IJobListener;
@@ -48,11 +51,14 @@ import yadf.simulation.map.MapIndex;
 /**
  * The Class Stockpile.
  */
-public class Stockpile extends ItemManager implements IItemManager, IEntity, IJobListener, IGameObjectAvailableListener {
+public class Stockpile extends ItemManager implements IItemManager, IEntity, IJobListener {
 
     /** Is the position in the stockpile used. */
     private final boolean[][] used;
 
+    /** The positions in the stockpile that are not used, relative to the stockpile, in the order they will be used. */
+    private final Deque<MapIndex> freeSlots = new ArrayDeque<>();
+
     /** What item type the stockpile accepts. */
     private final Set<ItemType> itemTypes = new LinkedHashSet<>();
 
@@ -76,55 +82,88 @@ public class Stockpile extends ItemManager implements IItemManager, IEntity, IJo
         area = areaTmp;
         player = playerTmp;
         used = new boolean[area.width][area.height];
+        for (int x = 0; x < area.width; x++) {
+            for (int y = 0; y < area.height; y++) {
+                freeSlots.add(new MapIndex(x, y, 0));
+            }
+        }
 
         for (ItemType itemType : ItemTypeManager.getInstance().getItemTypes()) {
             addItemType(itemType);
         }
-        
-        player.getComponent(IStockManager.class).getUnstoredItemManager().addAvailableListener(this);
     }
 
     public void addItemType(final ItemType itemType) {
         assert !itemTypes.contains(itemType);
         itemTypes.add(itemType);
-        createHaulJobs();
+        // Let the stockpile manager know so it sends items of this type here
+        notifyGameObjectChanged();
     }
 
     public void removeItemType(final ItemType itemType) {
         assert itemTypes.contains(itemType);
         itemTypes.remove(itemType);
+        notifyGameObjectChanged();
         cancelHaulJobs();
     }
 
     /**
-     * Create haul tasks to fill up the stockpile.
+     * Gets the item types that the stockpile accepts.
+     * @return the item types
      */
-    private void createHaulJobs() {
-        if (!itemTypes.isEmpty()) {
-            for (int x = 0; x < area.width; x++) {
-                for (int y = 0; y < area.height; y++) {
-                    if (!used[x][y]) {
-                        Item item = player.getComponent(IStockManager.class).getUnstoredItemManager().getItem(itemTypes);
-                        if (item != null) {
-                            item.setAvailable(false);
-                            used[x][y] = true;
-                            HaulJob haulJob = new HaulJob(item, this, getPosition().add(x, y, 0), player);
-                            haulJob.addListener(this);
-                            player.getComponent(IJobManager.class).addJob(haulJob);
-                            haulJobs.add(haulJob);
-                        }
-                    }
-                }
-            }
-        }
+    public Set<ItemType> getItemTypes() {
+        return itemTypes;
+    }
+
+    /**
+     * Checks if there is a position in the stockpile that is not used.
+     * @return true if there is
+     */
+    public boolean hasFreeSlot() {
+        return !freeSlots.isEmpty();
+    }
+
+    /**
+     * Gets the position that the next hauled item will be brought to.
+     * @return the position, not relative to the stockpile, null if there are no free positions
+     */
+    public MapIndex getFreeSlot() {
+        MapIndex slot = freeSlots.peek();
+        return slot != null ? getPosition().add(slot) : null;
+    }
+
+    /**
+     * Create a haul job to bring an unstored item to the next free position, the one given by {@link #getFreeSlot()}.
+     * @param item the item, it must be available and of a type that the stockpile accepts
+     * @param hauler the idle hauler to bring it
+     */
+    void haulItem(final Item item, final IGameCharacter hauler) {
+        assert item.isAvailable() && itemTypes.contains(item.getType());
+        MapIndex slot = freeSlots.remove();
+        assert !used[slot.x][slot.y];
+        used[slot.x][slot.y] = true;
+        item.setAvailable(false);
+        HaulJob haulJob = new HaulJob(item, this, getPosition().add(slot), hauler);
+        haulJob.addListener(this);
+        player.getComponent(IJobManager.class).addJob(haulJob);
+        haulJobs.add(haulJob);
+    }
+
+    /**
+     * Put a position back in the free slots.
+     * @param position the position, not relative to the stockpile
+     */
+    private void freeSlot(final MapIndex position) {
+        MapIndex slot = position.sub(getPosition());
+        assert used[slot.x][slot.y];
+        used[slot.x][slot.y] = false;
+        freeSlots.add(slot);
     }
-    
+
     private void cancelHaulJobs() {
-        for(HaulJob job : haulJobs) {
-            if(!itemTypes.contains(job.getItem().itemType)) {
-                MapIndex pos = job.getPosition().sub(getPosition());
-                assert used[pos.x][pos.y];
-                used[pos.x][pos.y] = false;
+        // Interrupting a job removes it from the haul jobs
+        for (HaulJob job : new ArrayList<>(haulJobs)) {
+            if (!itemTypes.contains(job.getItem().itemType)) {
                 job.interrupt("Stockpile no longer accepts this item type");
             }
         }
@@ -135,26 +174,24 @@ public class Stockpile extends ItemManager implements IItemManager, IEntity, IJo
         assert job.isDone();
         assert haulJobs.contains(job);
         haulJobs.remove(job);
-        ((HaulJob)job).getItem().setAvailable(true);
+        Item item = ((HaulJob) job).getItem();
+        // The item never got here if the job was interrupted, the job releases the item itself then
+        if (getGameObject(item.getId()) != item) {
+            freeSlot(job.getPosition());
+        } else {
+            item.setAvailable(true);
+        }
     }
 
     @Override
     public void jobChanged(IJob job) {
         // Do nothing
     }
-    
+
     @Override
     public void removeGameObject(Item item) {
         super.removeGameObject(item);
-        MapIndex pos = item.getPosition().sub(getPosition());
-        assert used[pos.x][pos.y];
-        used[pos.x][pos.y] = false;
-        createHaulJobs();
-    }
-    
-    @Override
-    public void gameObjectAvailable(IGameObject gameObject) {
-        createHaulJobs();
+        freeSlot(item.getPosition());
     }
 
     @Override
@@ -181,4 +218,14 @@ public class Stockpile extends ItemManager implements IItemManager, IEntity, IJo
     public boolean containsIndex(MapIndex index) {
         return area.containesIndex(index);
     }
+
+    @Override
+    public void addEntityMoveListener(final IEntityMoveListener listener) {
+        // Stockpiles never move
+    }
+
+    @Override
+    public void removeEntityMoveListener(final IEntityMoveListener listener) {
+        // Stockpiles never move
+    }
 }
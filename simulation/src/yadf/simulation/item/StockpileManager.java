@@ -1,15 +1,299 @@
 package yadf.simulation.item;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import yadf.simulation.AbstractGameObjectManager;
+import yadf.simulation.IGameObject;
+import yadf.simulation.IGameObjectAvailableListener;
+import yadf.simulation.IPlayer;
+import yadf.simulation.character.ICharacterManager;
+import yadf.simulation.character.IGameCharacter;
+import yadf.simulation.labor.LaborType;
+import yadf.simulation.labor.LaborTypeManager;
+import yadf.simulation.map.MapIndex;
+import yadf.simulation.map.RegionMap;
 
-public class StockpileManager extends AbstractGameObjectManager<Stockpile> implements IStockpileManager {
+/**
+ * The stockpile manager.
+ * <p>
+ * Also sends unstored items to the stockpiles. Unstored items that become available wait until the next haul
+ * assignment, then the waiting items, the stockpiles with free positions and the idle haulers are matched up so the
+ * haulers walk as little as possible.
+ */
+public class StockpileManager extends AbstractGameObjectManager<Stockpile> implements IStockpileManager,
+        IGameObjectAvailableListener {
+
+    /** The labor type needed to haul items. */
+    private static final LaborType HAULING_LABOR = LaborTypeManager.getInstance().getLaborType("Hauling");
+
+    /** How many simulation steps between each haul assignment. */
+    private static final int ASSIGNMENT_INTERVAL = 10;
+
+    /** The most waiting items to consider in one haul assignment. */
+    private static final int MAX_ASSIGNMENT_ITEMS = 64;
+
+    /** Orders haul assignments by how far the hauler has to walk, shortest first. */
+    private static final Comparator<HaulAssignment> COST_ORDER = new Comparator<HaulAssignment>() {
+        @Override
+        public int compare(final HaulAssignment o1, final HaulAssignment o2) {
+            return Integer.compare(o1.cost, o2.cost);
+        }
+    };
+
+    /** The unstored items. */
+    private final ItemManager unstoredItemManager;
+
+    /** The player that the stockpiles belong to. */
+    private final IPlayer player;
+
+    /** The stockpiles that accept each item type. */
+    private final Map<ItemType, Set<Stockpile>> acceptingStockpiles = new HashMap<>();
+
+    /** The unstored items waiting to be hauled to a stockpile by type, in the order they became available. */
+    private final Map<ItemType, Set<Item>> waitingItems = new LinkedHashMap<>();
+
+    /** How many simulation steps until the next haul assignment. */
+    private int stepsUntilAssignment = ASSIGNMENT_INTERVAL;
+
+    /**
+     * Constructor.
+     * @param unstoredItemManagerTmp the unstored items
+     * @param playerTmp the player that the stockpiles belong to
+     */
+    public StockpileManager(final ItemManager unstoredItemManagerTmp, final IPlayer playerTmp) {
+        unstoredItemManager = unstoredItemManagerTmp;
+        player = playerTmp;
+    }
 
     @Override
-    public void removeItem(final Item item) {
-        for (Stockpile stockpile : getGameObjects()) {
-            stockpile.removeGameObject(item);
+    public void addGameObject(final Stockpile stockpile) {
+        // Only listen for unstored items while there are stockpiles to put them in
+        if (getGameObjects().isEmpty()) {
+            unstoredItemManager.addAvailableListener(this);
+        }
+        super.addGameObject(stockpile);
+        addAcceptedItemTypes(stockpile);
+    }
+
+    @Override
+    public void removeGameObject(final Stockpile stockpile) {
+        removeAcceptedItemTypes(stockpile);
+        super.removeGameObject(stockpile);
+        if (getGameObjects().isEmpty()) {
+            unstoredItemManager.removeAvailableListener(this);
+        }
+    }
+
+    @Override
+    public void gameObjectChanged(final IGameObject gameObject) {
+        // The item types that a stockpile accepts may have changed, only the types that changed are looked at
+        Stockpile stockpile = (Stockpile) gameObject;
+        Set<ItemType> itemTypes = stockpile.getItemTypes();
+        List<ItemType> removedItemTypes = new ArrayList<>();
+        for (Map.Entry<ItemType, Set<Stockpile>> entry : acceptingStockpiles.entrySet()) {
+            if (!itemTypes.contains(entry.getKey()) && entry.getValue().contains(stockpile)) {
+                removedItemTypes.add(entry.getKey());
+            }
+        }
+        for (ItemType itemType : removedItemTypes) {
+            removeAcceptedItemType(stockpile, itemType);
+        }
+        addAcceptedItemTypes(stockpile);
+        super.gameObjectChanged(gameObject);
+    }
+
+    @Override
+    public void gameObjectAvailable(final IGameObject gameObject) {
+        Item item = (Item) gameObject;
+        if (!item.isPlaced() && acceptingStockpiles.containsKey(item.getType())) {
+            addWaitingItem(item);
+        }
+    }
+
+    /**
+     * Assign the waiting items to haulers every few steps.
+     */
+    public void update() {
+        if (--stepsUntilAssignment > 0) {
+            return;
+        }
+        stepsUntilAssignment = ASSIGNMENT_INTERVAL;
+        if (waitingItems.isEmpty()) {
+            return;
+        }
+        List<IGameCharacter> haulers = player.getComponent(ICharacterManager.class).getIdleCharacters(HAULING_LABOR);
+        if (haulers.isEmpty()) {
+            return;
+        }
+        RegionMap map = haulers.get(0).getRegion().getMap();
+
+        // Cost every pairing of a hauler with an item that has somewhere to go, item types that have no room in any
+        // stockpile are not looked at
+        List<HaulAssignment> assignments = new ArrayList<>();
+        List<Item> lookedAtItems = new ArrayList<>();
+        Iterator<Map.Entry<ItemType, Set<Item>>> typeIterator = waitingItems.entrySet().iterator();
+        while (typeIterator.hasNext() && lookedAtItems.size() < MAX_ASSIGNMENT_ITEMS) {
+            Map.Entry<ItemType, Set<Item>> entry = typeIterator.next();
+            if (!hasFreeSlot(entry.getKey())) {
+                continue;
+            }
+            Iterator<Item> iterator = entry.getValue().iterator();
+            while (iterator.hasNext() && lookedAtItems.size() < MAX_ASSIGNMENT_ITEMS) {
+                Item item = iterator.next();
+                if (!item.isAvailable() || item.isPlaced() || unstoredItemManager.getGameObject(item.getId()) != item) {
+                    iterator.remove();
+                    continue;
+                }
+                lookedAtItems.add(item);
+                Stockpile stockpile = getNearestStockpile(item, map);
+                if (stockpile == null) {
+                    continue;
+                }
+                MapIndex itemPosition = item.getPosition();
+                int haulDistance = itemPosition.distance(stockpile.getFreeSlot());
+                for (IGameCharacter hauler : haulers) {
+                    if (map.isReachable(hauler.getPosition(), itemPosition)) {
+                        assignments.add(new HaulAssignment(hauler, item, hauler.getPosition().distance(
+                                itemPosition) + haulDistance));
+                    }
+                }
+            }
+            if (entry.getValue().isEmpty()) {
+                typeIterator.remove();
+            }
+        }
+
+        // Greedily take the cheapest pairings, each hauler and item can only be used once
+        Collections.sort(assignments, COST_ORDER);
+        Set<IGameCharacter> assignedHaulers = new HashSet<>();
+        Set<Item> assignedItems = new HashSet<>();
+        for (HaulAssignment assignment : assignments) {
+            if (assignedHaulers.size() == haulers.size()) {
+                break;
+            }
+            if (assignedHaulers.contains(assignment.hauler) || assignedItems.contains(assignment.item)) {
+                continue;
+            }
+            // An earlier assignment may have used up the free positions
+            Stockpile stockpile = getNearestStockpile(assignment.item, map);
+            if (stockpile != null) {
+                waitingItems.get(assignment.item.getType()).remove(assignment.item);
+                assignedHaulers.add(assignment.hauler);
+                assignedItems.add(assignment.item);
+                stockpile.haulItem(assignment.item, assignment.hauler);
+            }
+        }
+
+        // The items that are still waiting go to the back, so the next assignment looks at different ones
+        for (Item item : lookedAtItems) {
+            Set<Item> items = waitingItems.get(item.getType());
+            if (items != null && items.remove(item)) {
+                items.add(item);
+            }
+        }
+    }
+
+    /**
+     * Checks if any stockpile that accepts an item type has a free position.
+     * @param itemType the item type
+     * @return true, if there is room for an item of the type
+     */
+    private boolean hasFreeSlot(final ItemType itemType) {
+        Set<Stockpile> stockpiles = acceptingStockpiles.get(itemType);
+        if (stockpiles != null) {
+            for (Stockpile stockpile : stockpiles) {
+                if (stockpile.hasFreeSlot()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the stockpile whose next free position is nearest to an item, out of the ones that accept its type and
+     * that the item can be carried to.
+     * @param item the item
+     * @param map the map
+     * @return the stockpile, null if there is none
+     */
+    private Stockpile getNearestStockpile(final Item item, final RegionMap map) {
+        Stockpile nearestStockpile = null;
+        int nearestDistance = Integer.MAX_VALUE;
+        MapIndex itemPosition = item.getPosition();
+        for (Stockpile stockpile : acceptingStockpiles.get(item.getType())) {
+            MapIndex slot = stockpile.getFreeSlot();
+            if (slot != null && itemPosition.distance(slot) < nearestDistance && map.isReachable(itemPosition, slot)) {
+                nearestStockpile = stockpile;
+                nearestDistance = itemPosition.distance(slot);
+            }
+        }
+        return nearestStockpile;
+    }
+
+    /**
+     * Add an item to the items waiting to be hauled to a stockpile.
+     * @param item the item
+     */
+    private void addWaitingItem(final Item item) {
+        Set<Item> items = waitingItems.get(item.getType());
+        if (items == null) {
+            items = new LinkedHashSet<>();
+            waitingItems.put(item.getType(), items);
+        }
+        items.add(item);
+    }
+
+    /**
+     * Add a stockpile to the accepting stockpiles of every item type it accepts.
+     * @param stockpile the stockpile
+     */
+    private void addAcceptedItemTypes(final Stockpile stockpile) {
+        for (ItemType itemType : stockpile.getItemTypes()) {
+            Set<Stockpile> stockpiles = acceptingStockpiles.get(itemType);
+            if (stockpiles == null) {
+                stockpiles = new LinkedHashSet<>();
+                acceptingStockpiles.put(itemType, stockpiles);
+                // No stockpile took the type before, so its free unstored items start waiting now
+                for (Item item : unstoredItemManager.getFreeItems(itemType)) {
+                    addWaitingItem(item);
+                }
+            }
+            stockpiles.add(stockpile);
+        }
+    }
+
+    /**
+     * Remove a stockpile from the accepting stockpiles of every item type.
+     * @param stockpile the stockpile
+     */
+    private void removeAcceptedItemTypes(final Stockpile stockpile) {
+        for (ItemType itemType : new ArrayList<>(acceptingStockpiles.keySet())) {
+            removeAcceptedItemType(stockpile, itemType);
+        }
+    }
+
+    /**
+     * Remove a stockpile from the accepting stockpiles of an item type.
+     * @param stockpile the stockpile
+     * @param itemType the item type
+     */
+    private void removeAcceptedItemType(final Stockpile stockpile, final ItemType itemType) {
+        Set<Stockpile> stockpiles = acceptingStockpiles.get(itemType);
+        if (stockpiles != null && stockpiles.remove(stockpile) && stockpiles.isEmpty()) {
+            // Items of a type that no stockpile accepts don't need to wait
+            acceptingStockpiles.remove(itemType);
+            waitingItems.remove(itemType);
         }
     }
 
@@ -61,6 +345,41 @@ public class StockpileManager extends AbstractGameObjectManager<Stockpile> imple
         return foundItem;
     }
 
+    @Override
+    public Item getNearestItem(final ItemType itemType, final MapIndex from) {
+        Item nearestItem = null;
+        for (Stockpile stockpile : getGameObjects()) {
+            nearestItem = getNearer(nearestItem, stockpile.getNearestItem(itemType, from), from);
+        }
+        return nearestItem;
+    }
+
+    @Override
+    public Item getNearestItemFromCategory(final String category, final MapIndex from) {
+        Item nearestItem = null;
+        for (Stockpile stockpile : getGameObjects()) {
+            nearestItem = getNearer(nearestItem, stockpile.getNearestItemFromCategory(category, from), from);
+        }
+        return nearestItem;
+    }
+
+    /**
+     * Gets whichever of two items is nearer to a position.
+     * @param item1 the first item, can be null
+     * @param item2 the second item, can be null
+     * @param from the position
+     * @return the nearer item, the first one if they are the same distance, null if both are null
+     */
+    static Item getNearer(final Item item1, final Item item2, final MapIndex from) {
+        if (item1 == null) {
+            return item2;
+        }
+        if (item2 == null || item1.getPosition().distance(from) <= item2.getPosition().distance(from)) {
+            return item1;
+        }
+        return item2;
+    }
+
     @Override
     public int getItemQuantity(final ItemType itemType) {
         int count = 0;
@@ -78,4 +397,31 @@ public class StockpileManager extends AbstractGameObjectManager<Stockpile> imple
         }
         return count;
     }
+
+    /**
+     * A possible pairing of a hauler with an item to haul.
+     */
+    private static class HaulAssignment {
+
+        /** The hauler. */
+        private final IGameCharacter hauler;
+
+        /** The item. */
+        private final Item item;
+
+        /** How far the hauler would walk, to the item and then to the stockpile. */
+        private final int cost;
+
+        /**
+         * Constructor.
+         * @param haulerTmp the hauler
+         * @param itemTmp the item
+         * @param costTmp how far the hauler would walk
+         */
+        HaulAssignment(final IGameCharacter haulerTmp, final Item itemTmp, final int costTmp) {
+            hauler = haulerTmp;
+            item = itemTmp;
+            cost = costTmp;
+        }
+    }
 }
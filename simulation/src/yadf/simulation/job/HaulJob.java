@@ -111,6 +111,26 @@ public class HaulJob extends AbstractJob {
         setJobState(new LookingForHaulerState());
     }
 
+    /**
+     * Instantiates a new haul job, start with item and an idle hauler that has been picked for it.
+     * @param itemTmp the item
+     * @param containerTmp the container to put the item in
+     * @param dropPositionTmp the drop position
+     * @param haulerTmp the hauler, must be available, it is given this job and released when the job is done
+     */
+    public HaulJob(final Item itemTmp, final IItemManager containerTmp, final MapIndex dropPositionTmp,
+            final IGameCharacter haulerTmp) {
+        super(haulerTmp.getPlayer());
+        item = itemTmp;
+        container = containerTmp;
+        dropPosition = dropPositionTmp;
+        hauler = haulerTmp;
+        itemType = item.getType();
+        needToReleaseLock = true;
+        hauler.setJob(this);
+        setJobState(new WalkToItemState());
+    }
+
     /**
      * Instantiates a new haul job.
      * @param itemTypeTmp the item
@@ -157,9 +177,12 @@ public class HaulJob extends AbstractJob {
         super.interrupt(message);
         if (needToReleaseLock && hauler != null) {
             hauler.setAvailable(true);
-            if (item != null) {
+            // The hauler may not have picked the item up yet
+            if (item != null && hauler.getComponent(IInventoryComponent.class).getHaulItem() == item) {
                 hauler.getComponent(IInventoryComponent.class).dropHaulItem(true);
                 getPlayer().getComponent(IStockManager.class).getUnstoredItemManager().addGameObject(item);
+            } else if (item != null) {
+                item.setAvailable(true);
             }
         } else if (item != null) {
             item.setAvailable(true);
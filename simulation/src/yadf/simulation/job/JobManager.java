@@ -40,6 +40,7 @@ import java.util.Map;
 import yadf.logger.Logger;
 import yadf.simulation.IPlayer;
 import yadf.simulation.IRegion;
+import yadf.simulation.IdMap;
 import yadf.simulation.job.designation.AbstractDesignation;
 import yadf.simulation.job.designation.ChannelDesignation;
 import yadf.simulation.job.designation.ChopTreeDesignation;
@@ -59,6 +60,9 @@ public class JobManager implements IJobManager, IJobListener {
     /** The jobs. */
     private final List<IJob> jobs = new ArrayList<>();
 
+    /** The jobs, by id. */
+    private final IdMap<IJob> jobsById = new IdMap<>();
+
     /** The designations. */
     private final Map<DesignationType, AbstractDesignation> designations = new HashMap<>();
 
@@ -74,6 +78,7 @@ public class JobManager implements IJobManager, IJobListener {
         Logger.getInstance().log(this, "Adding job: " + job.toString());
         job.addListener(this);
         jobs.add(job);
+        jobsById.put(job.getId(), job);
         int index = jobs.indexOf(job);
         for (IJobManagerListener listener : listeners) {
             listener.jobAdded(job, index);
@@ -86,6 +91,7 @@ public class JobManager implements IJobManager, IJobListener {
         Logger.getInstance().log(this, "Removing job: " + job.toString());
         int index = jobs.indexOf(job);
         jobs.remove(job);
+        jobsById.remove(job.getId());
         for (IJobManagerListener listener : listeners) {
             listener.jobRemoved(job, index);
         }
@@ -138,14 +144,7 @@ public class JobManager implements IJobManager, IJobListener {
 
     @Override
     public IJob getJob(final int jobId) {
-        IJob foundJob = null;
-        for (IJob job : jobs) {
-            if (job.getId() == jobId) {
-                foundJob = job;
-                break;
-            }
-        }
-        return foundJob;
+        return jobsById.get(jobId);
     }
 
     @Override
@@ -134,7 +134,7 @@ public class PlaceItemJob extends AbstractJob {
         @Override
         protected void doFinalActions() {
             item.setAvailable(true);
-            item.setPlaced(true);
+            getPlayer().getComponent(IStockManager.class).setItemPlaced(item, true);
         }
 
         @Override
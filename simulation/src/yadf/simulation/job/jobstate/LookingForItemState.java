@@ -6,6 +6,7 @@ import yadf.simulation.item.IStockManager;
 import yadf.simulation.item.Item;
 import yadf.simulation.item.ItemType;
 import yadf.simulation.job.AbstractJob;
+import yadf.simulation.map.MapIndex;
 
 /**
  * Generic looking for item job state.
@@ -57,10 +58,19 @@ public abstract class LookingForItemState extends AbstractJobState implements IG
 
     @Override
     public void start() {
-        if (itemType != null) {
-            item = getJob().getPlayer().getComponent(IStockManager.class).getItem(itemType.name, placed);
+        IStockManager stockManager = getJob().getPlayer().getComponent(IStockManager.class);
+        MapIndex jobPosition = getJob().getPosition();
+        // Take the unplaced item nearest to where the job is done, so it doesn't have to be carried far
+        if (!placed && jobPosition != null) {
+            if (itemType != null) {
+                item = stockManager.getNearestItem(itemType, jobPosition);
+            } else {
+                item = stockManager.getNearestItemFromCategory(category, jobPosition);
+            }
+        } else if (itemType != null) {
+            item = stockManager.getItem(itemType.name, placed);
         } else {
-            item = getJob().getPlayer().getComponent(IStockManager.class).getItemFromCategory(category, placed);
+            item = stockManager.getItemFromCategory(category, placed);
         }
         if (item == null) {
             getJob().getPlayer().getComponent(IStockManager.class).addAvailableListener(this);
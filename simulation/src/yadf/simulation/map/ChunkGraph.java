@@ -0,0 +1,630 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A hierarchical (HPA*) graph that sits above the walkable nodes, used to plan long paths.
+ * <p>
+ * The map is split into the same chunks as the block store. Where walkable nodes in two chunks are adjacent, the
+ * adjacencies are grouped into entrances and one pair of nodes from each entrance becomes a pair of abstract nodes,
+ * joined by an edge. The abstract nodes of each chunk are joined to each other by edges costed by a search limited to
+ * the chunk, the walkable path for an edge is only found (and then cached) when something walks along it.
+ * <p>
+ * When the map changes the chunk is marked as dirty and only its entrances, and the edges of it and its neighbours,
+ * are rebuilt the next time the graph is updated. Updates must be done on the simulation thread while no searches are
+ * running, the graph can then be searched from any number of threads.
+ */
+class ChunkGraph {
+
+    /** Paths between chunks at least this many chunks apart are planned using the chunk graph. */
+    private static final int MIN_CHUNK_DISTANCE = 4;
+
+    /** How many abstract nodes along the abstract path are refined into a walkable path at a time. */
+    private static final int REFINED_ENTRANCES = 8;
+
+    /** Orders the search entries by F cost. */
+    private static final Comparator<SearchEntry> F_COST_ORDER = new Comparator<SearchEntry>() {
+        @Override
+        public int compare(final SearchEntry o1, final SearchEntry o2) {
+            return Integer.compare(o1.f, o2.f);
+        }
+    };
+
+    /** The map. */
+    private final RegionMap map;
+
+    /** The number of chunks along the x axis. */
+    private final int chunksX;
+
+    /** The number of chunks along the y axis. */
+    private final int chunksY;
+
+    /** The number of chunks along the z axis. */
+    private final int chunksZ;
+
+    /** The chunks. */
+    private final Chunk[] chunks;
+
+    /** Indices of the chunks that have changed since the last update, sorted so updates are deterministic. */
+    private final Set<Integer> dirtyChunks = new TreeSet<>();
+
+    /** The planner used to cost the edges, only used on the simulation thread. */
+    private final PathPlanner planner = new PathPlanner();
+
+    /**
+     * Constructor, every chunk starts off dirty so the graph is built by the first update.
+     * @param mapTmp the map
+     */
+    ChunkGraph(final RegionMap mapTmp) {
+        map = mapTmp;
+        MapIndex mapSize = map.getMapSize();
+        int mask = ChunkedBlockStore.CHUNK_SIZE - 1;
+        chunksX = (mapSize.x + mask) >> ChunkedBlockStore.CHUNK_SHIFT;
+        chunksY = (mapSize.y + mask) >> ChunkedBlockStore.CHUNK_SHIFT;
+        chunksZ = (mapSize.z + mask) >> ChunkedBlockStore.CHUNK_SHIFT;
+        chunks = new Chunk[chunksX * chunksY * chunksZ];
+        for (int x = 0; x < chunksX; x++) {
+            for (int y = 0; y < chunksY; y++) {
+                for (int z = 0; z < chunksZ; z++) {
+                    MapIndex min = new MapIndex(x << ChunkedBlockStore.CHUNK_SHIFT, y << ChunkedBlockStore.CHUNK_SHIFT,
+                            z << ChunkedBlockStore.CHUNK_SHIFT);
+                    // Walkable nodes can be one above the top of the map
+                    int maxZ = z == chunksZ - 1 ? mapSize.z : min.z + mask;
+                    MapIndex max = new MapIndex(min.x + mask, min.y + mask, maxZ);
+                    int index = getChunkIndex(x, y, z);
+                    chunks[index] = new Chunk(index, min, max);
+                    dirtyChunks.add(index);
+                }
+            }
+        }
+    }
+
+    /**
+     * Mark the chunk containing a position as changed.
+     * @param position the position
+     */
+    void markDirty(final MapIndex position) {
+        Chunk chunk = getChunk(position);
+        if (chunk != null) {
+            dirtyChunks.add(chunk.index);
+        }
+    }
+
+    /**
+     * Checks if a path between two nodes is long enough that it should be planned using the chunk graph.
+     * @param start the start
+     * @param goal the goal
+     * @return true, if the chunk graph should be used
+     */
+    boolean isLongPath(final MapIndex start, final MapIndex goal) {
+        int shift = ChunkedBlockStore.CHUNK_SHIFT;
+        return Math.abs((start.x >> shift) - (goal.x >> shift)) >= MIN_CHUNK_DISTANCE
+                || Math.abs((start.y >> shift) - (goal.y >> shift)) >= MIN_CHUNK_DISTANCE
+                || Math.abs((start.z >> shift) - (goal.z >> shift)) >= MIN_CHUNK_DISTANCE;
+    }
+
+    /**
+     * Rebuild the parts of the graph around the chunks that have changed.
+     */
+    void update() {
+        if (dirtyChunks.isEmpty()) {
+            return;
+        }
+
+        // The chunks that need their internal edges costing again
+        Set<Integer> affectedChunks = new TreeSet<>();
+
+        // Remove the entrances of the dirty chunks, and the matching entrances in their neighbours
+        for (int index : dirtyChunks) {
+            Chunk chunk = chunks[index];
+            for (Entrance entrance : chunk.entrances) {
+                for (Edge edge : entrance.edges) {
+                    if (edge.to.chunk != chunk) {
+                        removeEdgesTo(edge.to, entrance);
+                        affectedChunks.add(edge.to.chunk.index);
+                    }
+                }
+            }
+            chunk.entrances.clear();
+            affectedChunks.add(index);
+        }
+
+        // Find the entrances between the dirty chunks and their neighbours
+        for (int index : dirtyChunks) {
+            Chunk chunk = chunks[index];
+            Map<Chunk, List<WalkableNode[]>> borders = new LinkedHashMap<>();
+            for (WalkableNode node : map.getWalkableNodes(chunk.min, chunk.max)) {
+                for (WalkableNode adjacent : node.adjacencies) {
+                    Chunk adjChunk = getChunk(adjacent);
+                    // If both chunks are dirty only do the border once
+                    if (adjChunk == chunk || (dirtyChunks.contains(adjChunk.index) && adjChunk.index < index)) {
+                        continue;
+                    }
+                    List<WalkableNode[]> border = borders.get(adjChunk);
+                    if (border == null) {
+                        border = new ArrayList<>();
+                        borders.put(adjChunk, border);
+                    }
+                    border.add(new WalkableNode[] {node, adjacent});
+                }
+            }
+            for (Map.Entry<Chunk, List<WalkableNode[]>> border : borders.entrySet()) {
+                addEntrances(chunk, border.getKey(), border.getValue());
+                affectedChunks.add(border.getKey().index);
+            }
+        }
+        dirtyChunks.clear();
+
+        for (int index : affectedChunks) {
+            costChunkEdges(chunks[index]);
+        }
+    }
+
+    /**
+     * Plan a long path using the chunk graph, only the first part of the path is refined into walkable nodes.
+     * @param searchPlanner the planner to use for the searches within chunks
+     * @param start the start
+     * @param goal the goal
+     * @return the path, from the end back to (but not including) the start, may end before the goal, null if there is
+     *         no path
+     */
+    List<MapIndex> findPath(final PathPlanner searchPlanner, final WalkableNode start, final WalkableNode goal) {
+        Chunk startChunk = getChunk(start);
+        Chunk goalChunk = getChunk(goal);
+        int[] startCosts = searchPlanner.findCosts(start, getNodes(startChunk), startChunk.min, startChunk.max);
+        int[] goalCosts = searchPlanner.findCosts(goal, getNodes(goalChunk), goalChunk.min, goalChunk.max);
+
+        List<Entrance> entrances = findEntrances(start, startCosts, goal, goalCosts);
+        if (entrances == null) {
+            return null;
+        }
+
+        // Refine the first part of the abstract path
+        List<MapIndex> forwardPath = new ArrayList<>();
+        WalkableNode from = start;
+        Entrance previous = null;
+        for (int i = 0; i < entrances.size() && i < REFINED_ENTRANCES; i++) {
+            Entrance entrance = entrances.get(i);
+            List<MapIndex> leg;
+            if (previous == null) {
+                leg = searchPlanner.findPath(start, entrance.node, startChunk.min, startChunk.max);
+            } else {
+                leg = getEdgePath(searchPlanner, previous, entrance);
+            }
+            if (leg == null) {
+                // The graph does not match the map, fall back to a normal search
+                return searchPlanner.findPath(start, goal);
+            }
+            addLeg(forwardPath, leg);
+            from = entrance.node;
+            previous = entrance;
+        }
+        if (entrances.size() <= REFINED_ENTRANCES) {
+            List<MapIndex> leg = searchPlanner.findPath(from, goal, goalChunk.min, goalChunk.max);
+            if (leg == null) {
+                return searchPlanner.findPath(start, goal);
+            }
+            addLeg(forwardPath, leg);
+        }
+
+        Collections.reverse(forwardPath);
+        return forwardPath;
+    }
+
+    /**
+     * Search the abstract graph for the entrances to go through to get from the start to the goal.
+     * @param start the start
+     * @param startCosts the cost to get from the start to each entrance of its chunk
+     * @param goal the goal
+     * @param goalCosts the cost to get from each entrance of the goal chunk to the goal
+     * @return the entrances in the order they are passed through, null if there is no path
+     */
+    private List<Entrance> findEntrances(final WalkableNode start, final int[] startCosts, final WalkableNode goal,
+            final int[] goalCosts) {
+        Chunk startChunk = getChunk(start);
+        Chunk goalChunk = getChunk(goal);
+        PriorityQueue<SearchEntry> openList = new PriorityQueue<>(16, F_COST_ORDER);
+        Map<Entrance, Integer> bestCosts = new IdentityHashMap<>();
+        Map<Entrance, Integer> goalEntranceCosts = new IdentityHashMap<>();
+
+        for (int i = 0; i < goalCosts.length; i++) {
+            if (goalCosts[i] != Integer.MAX_VALUE) {
+                goalEntranceCosts.put(goalChunk.entrances.get(i), goalCosts[i]);
+            }
+        }
+        for (int i = 0; i < startCosts.length; i++) {
+            if (startCosts[i] != Integer.MAX_VALUE) {
+                Entrance entrance = startChunk.entrances.get(i);
+                bestCosts.put(entrance, startCosts[i]);
+                openList.add(new SearchEntry(entrance, null, startCosts[i], PathPlanner.getHeuristic(entrance.node,
+                        goal)));
+            }
+        }
+
+        while (!openList.isEmpty()) {
+            SearchEntry current = openList.poll();
+            if (current.entrance == null) {
+                // The goal has been reached
+                List<Entrance> entrances = new ArrayList<>();
+                for (SearchEntry entry = current.parent; entry != null; entry = entry.parent) {
+                    entrances.add(entry.entrance);
+                }
+                Collections.reverse(entrances);
+                return entrances;
+            }
+            if (current.g > bestCosts.get(current.entrance)) {
+                continue;
+            }
+
+            Integer goalCost = goalEntranceCosts.get(current.entrance);
+            if (goalCost != null) {
+                openList.add(new SearchEntry(null, current, current.g + goalCost, 0));
+            }
+            for (Edge edge : current.entrance.edges) {
+                int newG = current.g + edge.cost;
+                Integer oldG = bestCosts.get(edge.to);
+                if (oldG == null || newG < oldG) {
+                    bestCosts.put(edge.to, newG);
+                    openList.add(new SearchEntry(edge.to, current, newG, PathPlanner.getHeuristic(edge.to.node, goal)));
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the walkable path along an abstract edge, finding it if it has not been used before.
+     * @param searchPlanner the planner to use
+     * @param from the entrance the edge starts at
+     * @param to the entrance the edge goes to
+     * @return the path, null if the edge could not be found
+     */
+    private static List<MapIndex> getEdgePath(final PathPlanner searchPlanner, final Entrance from, final Entrance to) {
+        for (Edge edge : from.edges) {
+            if (edge.to == to) {
+                List<MapIndex> path = edge.path;
+                if (path == null) {
+                    path = searchPlanner.findPath(from.node, to.node, from.chunk.min, from.chunk.max);
+                    edge.path = path;
+                }
+                return path;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a leg of the path, as returned by the planner, to the end of a path that is in walking order.
+     * @param forwardPath the path in walking order
+     * @param leg the leg, from its end back to its start
+     */
+    private static void addLeg(final List<MapIndex> forwardPath, final List<MapIndex> leg) {
+        for (int i = leg.size() - 1; i >= 0; i--) {
+            forwardPath.add(leg.get(i));
+        }
+    }
+
+    /**
+     * Group the adjacencies across the border between two chunks into entrances and add a pair of abstract nodes for
+     * each entrance. Two adjacencies are part of the same entrance if their nodes are next to each other on both sides
+     * of the border, that way every node of an entrance can be reached from its abstract node without leaving the
+     * chunk.
+     * @param chunk the first chunk
+     * @param adjChunk the second chunk
+     * @param border the adjacencies from the first chunk to the second
+     */
+    private void addEntrances(final Chunk chunk, final Chunk adjChunk, final List<WalkableNode[]> border) {
+        int[] groups = new int[border.size()];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = i;
+        }
+        for (int i = 0; i < groups.length; i++) {
+            for (int j = i + 1; j < groups.length; j++) {
+                if (isNear(border.get(i)[0], border.get(j)[0]) && isNear(border.get(i)[1], border.get(j)[1])) {
+                    groups[findGroup(groups, j)] = findGroup(groups, i);
+                }
+            }
+        }
+
+        // Use the middle adjacency of each group
+        Map<Integer, List<WalkableNode[]>> entrances = new LinkedHashMap<>();
+        for (int i = 0; i < groups.length; i++) {
+            int group = findGroup(groups, i);
+            List<WalkableNode[]> entrance = entrances.get(group);
+            if (entrance == null) {
+                entrance = new ArrayList<>();
+                entrances.put(group, entrance);
+            }
+            entrance.add(border.get(i));
+        }
+        for (List<WalkableNode[]> entrance : entrances.values()) {
+            WalkableNode[] pair = entrance.get(entrance.size() / 2);
+            Entrance from = getEntrance(chunk, pair[0]);
+            Entrance to = getEntrance(adjChunk, pair[1]);
+            int cost = PathPlanner.getMovementCost(pair[0], pair[1]);
+            from.edges.add(new Edge(to, cost, Collections.<MapIndex> singletonList(pair[1])));
+            to.edges.add(new Edge(from, cost, Collections.<MapIndex> singletonList(pair[0])));
+        }
+    }
+
+    /**
+     * Cost the edges between the entrances of a chunk, replacing any old ones.
+     * @param chunk the chunk
+     */
+    private void costChunkEdges(final Chunk chunk) {
+        for (Entrance entrance : chunk.entrances) {
+            for (int i = entrance.edges.size() - 1; i >= 0; i--) {
+                if (entrance.edges.get(i).to.chunk == chunk) {
+                    entrance.edges.remove(i);
+                }
+            }
+        }
+        List<WalkableNode> nodes = getNodes(chunk);
+        for (Entrance entrance : chunk.entrances) {
+            int[] costs = planner.findCosts(entrance.node, nodes, chunk.min, chunk.max);
+            for (int i = 0; i < costs.length; i++) {
+                Entrance other = chunk.entrances.get(i);
+                if (other != entrance && costs[i] != Integer.MAX_VALUE) {
+                    entrance.edges.add(new Edge(other, costs[i], null));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the edges from an entrance to another entrance, removing the entrance if it no longer leads to another
+     * chunk.
+     * @param entrance the entrance
+     * @param to the entrance that the edges go to
+     */
+    private static void removeEdgesTo(final Entrance entrance, final Entrance to) {
+        boolean leadsOut = false;
+        for (int i = entrance.edges.size() - 1; i >= 0; i--) {
+            Edge edge = entrance.edges.get(i);
+            if (edge.to == to) {
+                entrance.edges.remove(i);
+            } else if (edge.to.chunk != entrance.chunk) {
+                leadsOut = true;
+            }
+        }
+        if (!leadsOut) {
+            entrance.chunk.entrances.remove(entrance);
+        }
+    }
+
+    /**
+     * Get the entrance for a node, creating it if the node is not already an entrance.
+     * @param chunk the chunk the node is in
+     * @param node the node
+     * @return the entrance
+     */
+    private static Entrance getEntrance(final Chunk chunk, final WalkableNode node) {
+        for (Entrance entrance : chunk.entrances) {
+            if (entrance.node == node) {
+                return entrance;
+            }
+        }
+        Entrance entrance = new Entrance(chunk, node);
+        chunk.entrances.add(entrance);
+        return entrance;
+    }
+
+    /**
+     * Get the nodes of the entrances of a chunk.
+     * @param chunk the chunk
+     * @return the nodes, in the same order as the entrances
+     */
+    private static List<WalkableNode> getNodes(final Chunk chunk) {
+        List<WalkableNode> nodes = new ArrayList<>(chunk.entrances.size());
+        for (Entrance entrance : chunk.entrances) {
+            nodes.add(entrance.node);
+        }
+        return nodes;
+    }
+
+    /**
+     * Checks if two nodes are the same node or adjacent.
+     * @param node the first node
+     * @param other the second node
+     * @return true, if they are near each other
+     */
+    private static boolean isNear(final WalkableNode node, final WalkableNode other) {
+        return node == other || node.adjacencies.contains(other);
+    }
+
+    /**
+     * Find the group that an adjacency belongs to.
+     * @param groups the parent of each adjacency, a group is identified by the adjacency that is its own parent
+     * @param index the index of the adjacency
+     * @return the group
+     */
+    private static int findGroup(final int[] groups, final int index) {
+        int group = index;
+        while (groups[group] != group) {
+            groups[group] = groups[groups[group]];
+            group = groups[group];
+        }
+        return group;
+    }
+
+    /**
+     * Get the chunk containing a position.
+     * @param position the position
+     * @return the chunk, null if the position is outside the map
+     */
+    private Chunk getChunk(final MapIndex position) {
+        int x = position.x >> ChunkedBlockStore.CHUNK_SHIFT;
+        int y = position.y >> ChunkedBlockStore.CHUNK_SHIFT;
+        int z = Math.min(position.z >> ChunkedBlockStore.CHUNK_SHIFT, chunksZ - 1);
+        if (x < 0 || x >= chunksX || y < 0 || y >= chunksY || z < 0) {
+            return null;
+        }
+        return chunks[getChunkIndex(x, y, z)];
+    }
+
+    /**
+     * Get the index of a chunk.
+     * @param x the x position of the chunk
+     * @param y the y position of the chunk
+     * @param z the z position of the chunk
+     * @return the index
+     */
+    private int getChunkIndex(final int x, final int y, final int z) {
+        return (x * chunksY + y) * chunksZ + z;
+    }
+
+    /**
+     * A chunk of the map.
+     */
+    private static class Chunk {
+
+        /** The index of the chunk. */
+        private final int index;
+
+        /** The lowest corner of the chunk. */
+        private final MapIndex min;
+
+        /** The highest corner of the chunk. */
+        private final MapIndex max;
+
+        /** The abstract nodes in the chunk. */
+        private final List<Entrance> entrances = new ArrayList<>();
+
+        /**
+         * Constructor.
+         * @param indexTmp the index of the chunk
+         * @param minTmp the lowest corner of the chunk
+         * @param maxTmp the highest corner of the chunk
+         */
+        Chunk(final int indexTmp, final MapIndex minTmp, final MapIndex maxTmp) {
+            index = indexTmp;
+            min = minTmp;
+            max = maxTmp;
+        }
+    }
+
+    /**
+     * An abstract node, a walkable node on the border of a chunk that leads into another chunk.
+     */
+    private static class Entrance {
+
+        /** The chunk the entrance is in. */
+        private final Chunk chunk;
+
+        /** The walkable node. */
+        private final WalkableNode node;
+
+        /** The edges to the entrances of the same chunk and to the matching entrances of other chunks. */
+        private final List<Edge> edges = new ArrayList<>();
+
+        /**
+         * Constructor.
+         * @param chunkTmp the chunk the entrance is in
+         * @param nodeTmp the walkable node
+         */
+        Entrance(final Chunk chunkTmp, final WalkableNode nodeTmp) {
+            chunk = chunkTmp;
+            node = nodeTmp;
+        }
+    }
+
+    /**
+     * An abstract edge.
+     */
+    private static class Edge {
+
+        /** The entrance the edge goes to. */
+        private final Entrance to;
+
+        /** The cost of walking along the edge. */
+        private final int cost;
+
+        /** The walkable path along the edge, null until it is first needed. */
+        private volatile List<MapIndex> path;
+
+        /**
+         * Constructor.
+         * @param toTmp the entrance the edge goes to
+         * @param costTmp the cost of walking along the edge
+         * @param pathTmp the walkable path along the edge, null if it has not been found yet
+         */
+        Edge(final Entrance toTmp, final int costTmp, final List<MapIndex> pathTmp) {
+            to = toTmp;
+            cost = costTmp;
+            path = pathTmp;
+        }
+    }
+
+    /**
+     * An entry in the open list of a search of the abstract graph.
+     */
+    private static class SearchEntry {
+
+        /** The entrance, null for the goal. */
+        private final Entrance entrance;
+
+        /** The entry this one was reached from. */
+        private final SearchEntry parent;
+
+        /** The cost of getting here from the start. */
+        private final int g;
+
+        /** The estimated total cost. */
+        private final int f;
+
+        /**
+         * Constructor.
+         * @param entranceTmp the entrance, null for the goal
+         * @param parentTmp the entry this one was reached from
+         * @param gTmp the cost of getting here from the start
+         * @param h the estimated cost of getting from here to the goal
+         */
+        SearchEntry(final Entrance entranceTmp, final SearchEntry parentTmp, final int gTmp, final int h) {
+            entrance = entranceTmp;
+            parent = parentTmp;
+            g = gTmp;
+            f = gTmp + h;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import java.util.Arrays;
+
+/**
+ * Stores the block types of a map as one byte (the ordinal) per block, split up into fixed size cubic chunks.
+ * <p>
+ * Chunks where every block is the same type (e.g. all air or all rock) are collapsed into a single value, so only the
+ * chunks around the surface and the mined out areas need a full array.
+ */
+class ChunkedBlockStore {
+
+    /** Log2 of the chunk size. */
+    static final int CHUNK_SHIFT = 4;
+
+    /** How many blocks along each side of a chunk. */
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /** Mask to get the position of a block within its chunk. */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** How many blocks in a chunk. */
+    private static final int CHUNK_VOLUME = CHUNK_SIZE * CHUNK_SIZE * CHUNK_SIZE;
+
+    /** All the block types, indexed by ordinal. */
+    private static final BlockType[] BLOCK_TYPES = BlockType.values();
+
+    /** The number of chunks along the y axis. */
+    private final int chunksY;
+
+    /** The number of chunks along the z axis. */
+    private final int chunksZ;
+
+    /** The blocks of each chunk, null if the chunk has been collapsed. */
+    private final byte[][] chunks;
+
+    /** The block type of each collapsed chunk. */
+    private final byte[] collapsedTypes;
+
+    /**
+     * Constructor.
+     * @param size the size of the map
+     * @param fill the block type that every block starts as
+     */
+    ChunkedBlockStore(final MapIndex size, final BlockType fill) {
+        int chunksX = (size.x + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunksY = (size.y + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunksZ = (size.z + CHUNK_MASK) >> CHUNK_SHIFT;
+        int chunkCount = chunksX * chunksY * chunksZ;
+        chunks = new byte[chunkCount][];
+        collapsedTypes = new byte[chunkCount];
+        Arrays.fill(collapsedTypes, (byte) fill.ordinal());
+    }
+
+    /**
+     * Gets the index of the chunk containing a block, the position must be within the map.
+     * @param x the x position
+     * @param y the y position
+     * @param z the z position
+     * @return the chunk index
+     */
+    int getChunkIndex(final int x, final int y, final int z) {
+        return ((x >> CHUNK_SHIFT) * chunksY + (y >> CHUNK_SHIFT)) * chunksZ + (z >> CHUNK_SHIFT);
+    }
+
+    /**
+     * Gets the number of chunks.
+     * @return the number of chunks
+     */
+    int getChunkCount() {
+        return chunks.length;
+    }
+
+    /**
+     * Gets the block type at a position, the position must be within the map.
+     * @param x the x position
+     * @param y the y position
+     * @param z the z position
+     * @return the block type
+     */
+    BlockType getBlock(final int x, final int y, final int z) {
+        int chunkIndex = getChunkIndex(x, y, z);
+        byte[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            return BLOCK_TYPES[collapsedTypes[chunkIndex]];
+        }
+        return BLOCK_TYPES[chunk[getBlockOffset(x, y, z)]];
+    }
+
+    /**
+     * Sets the block type at a position, expanding its chunk if it has been collapsed, the position must be within the
+     * map.
+     * @param x the x position
+     * @param y the y position
+     * @param z the z position
+     * @param type the new block type
+     */
+    void setBlock(final int x, final int y, final int z, final BlockType type) {
+        int chunkIndex = getChunkIndex(x, y, z);
+        byte value = (byte) type.ordinal();
+        byte[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            if (collapsedTypes[chunkIndex] == value) {
+                return;
+            }
+            chunk = new byte[CHUNK_VOLUME];
+            Arrays.fill(chunk, collapsedTypes[chunkIndex]);
+            chunks[chunkIndex] = chunk;
+        }
+        chunk[getBlockOffset(x, y, z)] = value;
+    }
+
+    /**
+     * Collapse every chunk where all the blocks are the same type.
+     * @return the number of collapsed chunks
+     */
+    int compact() {
+        int collapsed = 0;
+        for (int i = 0; i < chunks.length; i++) {
+            byte[] chunk = chunks[i];
+            if (chunk != null && isUniform(chunk)) {
+                collapsedTypes[i] = chunk[0];
+                chunks[i] = null;
+            }
+            if (chunks[i] == null) {
+                collapsed++;
+            }
+        }
+        return collapsed;
+    }
+
+    /**
+     * Gets the offset of a block within its chunk.
+     * @param x the x position
+     * @param y the y position
+     * @param z the z position
+     * @return the offset
+     */
+    private static int getBlockOffset(final int x, final int y, final int z) {
+        return (((x & CHUNK_MASK) << CHUNK_SHIFT | (y & CHUNK_MASK)) << CHUNK_SHIFT) | (z & CHUNK_MASK);
+    }
+
+    /**
+     * Checks if all the blocks in a chunk are the same type.
+     * @param chunk the chunk
+     * @return true if they are all the same
+     */
+    private static boolean isUniform(final byte[] chunk) {
+        byte first = chunk[0];
+        for (byte value : chunk) {
+            if (value != first) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,331 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Labels the walkable nodes with the connected component they belong to, so a path between two nodes in different
+ * components can be ruled out without searching.
+ * <p>
+ * Components are joined using union-find as nodes are added. When a node is removed its old neighbours are checked to
+ * see if they are still connected to each other around it, if they are not a flood is grown from each side at the same
+ * pace until all but one have run out of nodes, and the sides that ran out are given labels of their own. If the floods
+ * get too big every node is labelled again the next time the components are updated instead. Updates must be done on the simulation thread
+ * while no searches are running, the components can then be read from any number of threads.
+ */
+class ConnectedComponents {
+
+    /** The most nodes that are flooded to split a component before giving up and labelling every node again. */
+    private static final int MAX_SPLIT_FLOOD = 4096;
+
+    /**
+     * Nodes reached from one side of a removed node while looking for a split.
+     */
+    private static final class Flood {
+
+        /** The nodes that have been reached. */
+        private final List<WalkableNode> nodes = new ArrayList<>();
+
+        /** The reached nodes whose neighbours have not been looked at yet. */
+        private final Deque<WalkableNode> open = new ArrayDeque<>();
+
+        /** The flood this one has been joined to, or itself if it has not been joined. */
+        private Flood parent = this;
+
+        /**
+         * Add a newly reached node.
+         * @param node the node
+         */
+        void add(final WalkableNode node) {
+            nodes.add(node);
+            open.add(node);
+        }
+
+        /**
+         * Join another flood that has met this one onto this one.
+         * @param other the other flood
+         */
+        void join(final Flood other) {
+            other.parent = this;
+            nodes.addAll(other.nodes);
+            open.addAll(other.open);
+            other.nodes.clear();
+            other.open.clear();
+        }
+
+        /**
+         * Gets the flood this one has been joined to.
+         * @return the root flood
+         */
+        Flood getRoot() {
+            Flood root = this;
+            while (root.parent != root) {
+                root = root.parent;
+            }
+            return root;
+        }
+    }
+
+    /** The map. */
+    private final RegionMap map;
+
+    /** The label of each walkable node, indexed by node id. */
+    private int[] nodeLabels = new int[0];
+
+    /** The parent of each label, a label is the root of its component if it is its own parent. */
+    private int[] labelParents = new int[0];
+
+    /** The number of labels in use. */
+    private int labelCount;
+
+    /** True if a component might have been split, so all the nodes need labelling again. */
+    private boolean relabelNeeded = true;
+
+    /** True if labels have been joined since the last update. */
+    private boolean joined;
+
+    /**
+     * Constructor, the nodes are labelled by the first update.
+     * @param mapTmp the map
+     */
+    ConnectedComponents(final RegionMap mapTmp) {
+        map = mapTmp;
+    }
+
+    /**
+     * Bring the labels up to date with the map.
+     */
+    void update() {
+        if (relabelNeeded) {
+            relabel();
+            relabelNeeded = false;
+            joined = false;
+        } else if (joined) {
+            // Point every label straight at its root so reading them is quick and never writes
+            for (int i = 0; i < labelCount; i++) {
+                labelParents[i] = getRoot(i);
+            }
+            joined = false;
+        }
+    }
+
+    /**
+     * Checks if two walkable nodes are in the same component, i.e. if there could be a path between them.
+     * @param node the first node
+     * @param otherNode the second node
+     * @return true, if they are connected
+     */
+    boolean isConnected(final WalkableNode node, final WalkableNode otherNode) {
+        return getRoot(nodeLabels[node.id]) == getRoot(nodeLabels[otherNode.id]);
+    }
+
+    /**
+     * Add a node that has just been connected to its neighbours to the component of its neighbours, joining their
+     * components if they are different.
+     * @param node the new node
+     */
+    void nodeAdded(final WalkableNode node) {
+        if (relabelNeeded) {
+            return;
+        }
+        ensureNodeCapacity(node.id);
+        int label = -1;
+        for (WalkableNode adjNode : node.adjacencies) {
+            int root = getRoot(nodeLabels[adjNode.id]);
+            if (label == -1) {
+                label = root;
+            } else if (root != label) {
+                labelParents[root] = label;
+                joined = true;
+            }
+        }
+        if (label == -1) {
+            label = newLabel();
+        }
+        nodeLabels[node.id] = label;
+    }
+
+    /**
+     * Split the component of a node that has just been disconnected from its neighbours if removing it cut the
+     * component in two.
+     * @param node the removed node
+     */
+    void nodeRemoved(final WalkableNode node) {
+        if (relabelNeeded || node.adjacencies.size() < 2) {
+            return;
+        }
+        // Group the old neighbours by paths that stay next to the removed node, a single group means nothing was cut
+        Map<WalkableNode, Flood> nodeFloods = new HashMap<>();
+        List<Flood> openFloods = new ArrayList<>();
+        for (WalkableNode first : node.adjacencies) {
+            if (nodeFloods.containsKey(first)) {
+                continue;
+            }
+            Flood flood = new Flood();
+            flood.add(first);
+            nodeFloods.put(first, flood);
+            for (int i = 0; i < flood.nodes.size(); i++) {
+                for (WalkableNode adjNode : flood.nodes.get(i).adjacencies) {
+                    if (isNextTo(node, adjNode) && !nodeFloods.containsKey(adjNode)) {
+                        flood.add(adjNode);
+                        nodeFloods.put(adjNode, flood);
+                    }
+                }
+            }
+            openFloods.add(flood);
+        }
+        // Flood out from every group a node at a time, joining floods that meet, a flood that runs out of nodes while
+        // another is still going is a component of its own, so the smaller sides are found first
+        int floodedCount = nodeFloods.size();
+        while (openFloods.size() > 1) {
+            for (int i = 0; i < openFloods.size() && openFloods.size() > 1;) {
+                Flood flood = openFloods.get(i);
+                if (flood.open.isEmpty()) {
+                    int label = newLabel();
+                    for (WalkableNode floodNode : flood.nodes) {
+                        nodeLabels[floodNode.id] = label;
+                    }
+                    openFloods.remove(i);
+                    continue;
+                }
+                WalkableNode current = flood.open.poll();
+                for (WalkableNode adjNode : current.adjacencies) {
+                    Flood otherFlood = nodeFloods.get(adjNode);
+                    if (otherFlood == null) {
+                        flood.add(adjNode);
+                        nodeFloods.put(adjNode, flood);
+                        floodedCount++;
+                    } else {
+                        otherFlood = otherFlood.getRoot();
+                        if (otherFlood != flood) {
+                            int otherIndex = openFloods.indexOf(otherFlood);
+                            openFloods.remove(otherIndex);
+                            if (otherIndex < i) {
+                                i--;
+                            }
+                            flood.join(otherFlood);
+                        }
+                    }
+                }
+                if (floodedCount > MAX_SPLIT_FLOOD) {
+                    // Both sides are big, it's quicker to label everything again than to keep flooding
+                    relabelNeeded = true;
+                    return;
+                }
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Label every walkable node with its component.
+     */
+    private void relabel() {
+        List<WalkableNode> nodes = map.getWalkableNodes(new MapIndex(0, 0, 0), map.getMapSize());
+        for (WalkableNode node : nodes) {
+            ensureNodeCapacity(node.id);
+            nodeLabels[node.id] = -1;
+        }
+        labelCount = 0;
+        Deque<WalkableNode> open = new ArrayDeque<>();
+        for (WalkableNode node : nodes) {
+            if (nodeLabels[node.id] != -1) {
+                continue;
+            }
+            int label = newLabel();
+            nodeLabels[node.id] = label;
+            open.add(node);
+            while (!open.isEmpty()) {
+                WalkableNode current = open.poll();
+                for (WalkableNode adjNode : current.adjacencies) {
+                    if (nodeLabels[adjNode.id] == -1) {
+                        nodeLabels[adjNode.id] = label;
+                        open.add(adjNode);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the root label of the component that a label belongs to.
+     * @param label the label
+     * @return the root label
+     */
+    private int getRoot(final int label) {
+        int root = label;
+        while (labelParents[root] != root) {
+            root = labelParents[root];
+        }
+        return root;
+    }
+
+    /**
+     * Create a new label for a component of its own.
+     * @return the label
+     */
+    private int newLabel() {
+        if (labelCount == labelParents.length) {
+            labelParents = Arrays.copyOf(labelParents, Math.max(labelCount * 2, 16));
+        }
+        labelParents[labelCount] = labelCount;
+        return labelCount++;
+    }
+
+    /**
+     * Make sure there is a label for a node id.
+     * @param id the node id
+     */
+    private void ensureNodeCapacity(final int id) {
+        if (id >= nodeLabels.length) {
+            nodeLabels = Arrays.copyOf(nodeLabels, Math.max(id + 1, nodeLabels.length * 2));
+        }
+    }
+
+    /**
+     * Checks if a position is within one block of a node in every direction.
+     * @param node the node
+     * @param position the position
+     * @return true, if it is next to the node
+     */
+    private static boolean isNextTo(final MapIndex node, final MapIndex position) {
+        return Math.abs(node.x - position.x) <= 1 && Math.abs(node.y - position.y) <= 1
+                && Math.abs(node.z - position.z) <= 1;
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The distances from the walkable nodes in an area to the nearest of a set of goals, a character anywhere in the area
+ * can get to the goals by always stepping to the neighbour that is closest to them.
+ */
+class DistanceField {
+
+    /** The lowest corner of the area. */
+    private final MapIndex min;
+
+    /** The highest corner of the area. */
+    private final MapIndex max;
+
+    /** The lowest corner of the box around the nodes that a goal can be reached from. */
+    private final MapIndex reachedMin;
+
+    /** The size of the box around the nodes that a goal can be reached from. */
+    private final MapIndex reachedSize;
+
+    /** The distance from each position in the box to the nearest goal, Integer.MAX_VALUE if there is no node there. */
+    private final int[] distances;
+
+    /**
+     * Constructor, the distances are only kept for the box around the nodes that were reached, so a field takes up
+     * little memory however big the map is.
+     * @param minTmp the lowest corner of the area
+     * @param maxTmp the highest corner of the area
+     * @param nodes the nodes in the area that a goal can be reached from
+     * @param nodeDistances the distance from each of the nodes to the nearest goal
+     */
+    DistanceField(final MapIndex minTmp, final MapIndex maxTmp, final List<WalkableNode> nodes,
+            final int[] nodeDistances) {
+        min = minTmp;
+        max = maxTmp;
+        if (nodes.isEmpty()) {
+            reachedMin = new MapIndex(minTmp);
+            reachedSize = new MapIndex(0, 0, 0);
+            distances = new int[0];
+            return;
+        }
+        MapIndex low = new MapIndex(nodes.get(0));
+        MapIndex high = new MapIndex(nodes.get(0));
+        for (WalkableNode node : nodes) {
+            low = new MapIndex(Math.min(low.x, node.x), Math.min(low.y, node.y), Math.min(low.z, node.z));
+            high = new MapIndex(Math.max(high.x, node.x), Math.max(high.y, node.y), Math.max(high.z, node.z));
+        }
+        reachedMin = low;
+        reachedSize = high.sub(low).add(1, 1, 1);
+        distances = new int[reachedSize.x * reachedSize.y * reachedSize.z];
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        for (int i = 0; i < nodeDistances.length; i++) {
+            distances[getIndex(nodes.get(i))] = nodeDistances[i];
+        }
+    }
+
+    /**
+     * Checks if a node is inside the area and a goal can be reached from it.
+     * @param node the node
+     * @return true, if the field can be followed from the node
+     */
+    boolean contains(final WalkableNode node) {
+        if (!isInArea(node)) {
+            return false;
+        }
+        int index = getIndex(node);
+        return index != -1 && distances[index] != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Checks if a position is inside the area, even if a goal can't be reached from it.
+     * @param position the position
+     * @return true, if it is inside the area
+     */
+    boolean isInArea(final MapIndex position) {
+        return position.x >= min.x && position.x <= max.x && position.y >= min.y && position.y <= max.y
+                && position.z >= min.z && position.z <= max.z;
+    }
+
+    /**
+     * Gets the distance from a node that the field contains to the nearest goal.
+     * @param node the node
+     * @return the distance
+     */
+    int getDistance(final WalkableNode node) {
+        return distances[getIndex(node)];
+    }
+
+    /**
+     * Gets the neighbour of a node that the field contains that is on the cheapest path to the goals.
+     * @param node the node
+     * @return the next node, null if the node is a goal
+     */
+    WalkableNode getNextNode(final WalkableNode node) {
+        if (getDistance(node) == 0) {
+            return null;
+        }
+        WalkableNode next = null;
+        int nextDistance = Integer.MAX_VALUE;
+        for (WalkableNode adjacent : node.adjacencies) {
+            if (contains(adjacent)) {
+                int distance = getDistance(adjacent) + PathPlanner.getMovementCost(node, adjacent);
+                if (distance < nextDistance) {
+                    next = adjacent;
+                    nextDistance = distance;
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Checks if a changed block could change the field, i.e. it is inside the area or next to it.
+     * @param position the position of the block
+     * @return true, if the field needs to be worked out again
+     */
+    boolean isNear(final MapIndex position) {
+        return position.x >= min.x - 1 && position.x <= max.x + 1 && position.y >= min.y - 1 && position.y <= max.y + 1
+                && position.z >= min.z - 1 && position.z <= max.z + 1;
+    }
+
+    /**
+     * Gets the index of a position in the distances.
+     * @param position the position
+     * @return the index, -1 if the position is outside the box around the reached nodes
+     */
+    private int getIndex(final MapIndex position) {
+        int x = position.x - reachedMin.x;
+        int y = position.y - reachedMin.y;
+        int z = position.z - reachedMin.z;
+        if (x < 0 || x >= reachedSize.x || y < 0 || y >= reachedSize.y || z < 0 || z >= reachedSize.z) {
+            return -1;
+        }
+        return (x * reachedSize.y + y) * reachedSize.z + z;
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches distance fields (flow fields) for destinations that lots of characters are heading to, like stockpiles, food
+ * and workshops.
+ * <p>
+ * Once a set of goals has been asked for often enough a field holding the distance from every node around the goals to
+ * the nearest goal is worked out with one search, then any character starting inside the field can follow it downhill
+ * to the goals without a search of its own. A field is thrown away when a block inside it (or next to it) changes, and
+ * is worked out again the next time it is asked for.
+ * <p>
+ * The fields are only changed on the simulation thread while no searches are running, so they can be read from any
+ * number of threads.
+ */
+class FlowFieldCache implements IMapListener {
+
+    /** How many times a set of goals must be asked for before it gets a field. */
+    private static final int HOT_REQUEST_COUNT = 4;
+
+    /** How far a field reaches out from its goals. */
+    private static final int FIELD_RADIUS = 24;
+
+    /** The most fields that are kept, the least recently used is thrown away first. */
+    private static final int MAX_FIELDS = 16;
+
+    /** The most sets of goals whose requests are counted. */
+    private static final int MAX_COUNTED_GOALS = 256;
+
+    /** The map. */
+    private final RegionMap map;
+
+    /** The planner used to work out the fields, only used on the simulation thread. */
+    private final PathPlanner planner = new PathPlanner();
+
+    /** The fields, keyed by their goals, in order of when they were last used. */
+    private final Map<List<MapIndex>, DistanceField> fields = new LinkedHashMap<>();
+
+    /** How many times each set of goals has been asked for. */
+    private final Map<List<MapIndex>, Integer> requestCounts = new LinkedHashMap<List<MapIndex>, Integer>() {
+        /** The serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<List<MapIndex>, Integer> eldest) {
+            return size() > MAX_COUNTED_GOALS;
+        }
+    };
+
+    /** Goals that have become popular enough to need a field. */
+    private final Set<List<MapIndex>> pendingFields = new LinkedHashSet<>();
+
+    /**
+     * Constructor.
+     * @param mapTmp the map
+     */
+    FlowFieldCache(final RegionMap mapTmp) {
+        map = mapTmp;
+    }
+
+    /**
+     * Count a request for a path to a set of goals, must be called on the simulation thread.
+     * @param goals the goals
+     */
+    void requested(final Collection<? extends MapIndex> goals) {
+        List<MapIndex> key = new ArrayList<MapIndex>(goals);
+        DistanceField field = fields.remove(key);
+        if (field != null) {
+            // Move it to the end so it is the last to be thrown away
+            fields.put(key, field);
+            return;
+        }
+        Integer count = requestCounts.get(key);
+        count = count == null ? 1 : count + 1;
+        requestCounts.put(key, count);
+        if (count >= HOT_REQUEST_COUNT) {
+            requestCounts.remove(key);
+            pendingFields.add(key);
+        }
+    }
+
+    /**
+     * Work out the fields for the goals that have become popular, must be called on the simulation thread while no
+     * searches are running.
+     */
+    void update() {
+        for (List<MapIndex> goals : pendingFields) {
+            DistanceField field = createField(goals);
+            if (field != null) {
+                fields.put(goals, field);
+                if (fields.size() > MAX_FIELDS) {
+                    fields.remove(fields.keySet().iterator().next());
+                }
+            }
+        }
+        pendingFields.clear();
+    }
+
+    /**
+     * Find a path by following the field for a set of goals.
+     * @param start the start
+     * @param goals the goals
+     * @return the path, from the goal back to (but not including) the start, null if there is no field for the goals
+     *         or it does not reach the start
+     */
+    List<MapIndex> findPath(final WalkableNode start, final Collection<? extends MapIndex> goals) {
+        if (fields.isEmpty()) {
+            return null;
+        }
+        DistanceField field = fields.get(goals instanceof List ? goals : new ArrayList<MapIndex>(goals));
+        if (field == null || !field.contains(start)) {
+            return null;
+        }
+
+        // Walk downhill to a goal, then turn the path around
+        List<MapIndex> path = new ArrayList<>();
+        WalkableNode current = field.getNextNode(start);
+        while (current != null) {
+            path.add(current);
+            current = field.getNextNode(current);
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    @Override
+    public void mapChanged(final MapIndex mapIndex) {
+        List<List<MapIndex>> changed = new ArrayList<>();
+        for (Map.Entry<List<MapIndex>, DistanceField> entry : fields.entrySet()) {
+            if (entry.getValue().isNear(mapIndex)) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (List<MapIndex> goals : changed) {
+            // It is still popular, so the next request for it will work it out again
+            fields.remove(goals);
+            requestCounts.put(goals, HOT_REQUEST_COUNT - 1);
+        }
+    }
+
+    /**
+     * Create the field for a set of goals.
+     * @param goals the goals
+     * @return the field, null if none of the goals are walkable
+     */
+    private DistanceField createField(final List<MapIndex> goals) {
+        List<WalkableNode> goalNodes = new ArrayList<>();
+        MapIndex min = null;
+        MapIndex max = null;
+        for (MapIndex goal : goals) {
+            WalkableNode node = goal != null ? map.getWalkableNode(goal) : null;
+            if (node == null) {
+                continue;
+            }
+            goalNodes.add(node);
+            if (min == null) {
+                min = new MapIndex(node);
+                max = new MapIndex(node);
+            } else {
+                min = new MapIndex(Math.min(min.x, node.x), Math.min(min.y, node.y), Math.min(min.z, node.z));
+                max = new MapIndex(Math.max(max.x, node.x), Math.max(max.y, node.y), Math.max(max.z, node.z));
+            }
+        }
+        if (goalNodes.isEmpty()) {
+            return null;
+        }
+        min = min.add(-FIELD_RADIUS, -FIELD_RADIUS, -FIELD_RADIUS);
+        max = max.add(FIELD_RADIUS, FIELD_RADIUS, FIELD_RADIUS);
+        return planner.findDistanceField(goalNodes, min, max);
+    }
+}
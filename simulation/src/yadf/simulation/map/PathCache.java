@@ -0,0 +1,257 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A least recently used cache of paths, keyed by where they start and the goals they were found for.
+ * <p>
+ * Each chunk of the map has a version that goes up whenever a block in it changes, and each path remembers the
+ * versions of the chunks it crosses. A cached path is only used if none of those chunks have changed since, so a
+ * repeated request costs a lookup and a check of a few versions rather than a search.
+ * <p>
+ * The cache is not thread safe, it is only used on the simulation thread so the paths that are found do not depend on
+ * the order the worker threads finish in.
+ */
+class PathCache implements IMapListener {
+
+    /** The most paths that are kept. */
+    private static final int MAX_ENTRIES = 1024;
+
+    /** The number of chunks along the y axis. */
+    private final int chunksY;
+
+    /** The number of chunks along the z axis. */
+    private final int chunksZ;
+
+    /** The version of each chunk. */
+    private final int[] chunkVersions;
+
+    /** The cached paths, in order of when they were last used. */
+    private final Map<Key, CachedPath> entries = new LinkedHashMap<Key, CachedPath>(16, 0.75f, true) {
+        /** The serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, CachedPath> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** How many requests have been answered from the cache. */
+    private long hits;
+
+    /** How many requests could not be answered from the cache. */
+    private long misses;
+
+    /**
+     * Constructor.
+     * @param mapSize the size of the map
+     */
+    PathCache(final MapIndex mapSize) {
+        int mask = ChunkedBlockStore.CHUNK_SIZE - 1;
+        int chunksX = (mapSize.x + mask) >> ChunkedBlockStore.CHUNK_SHIFT;
+        chunksY = (mapSize.y + mask) >> ChunkedBlockStore.CHUNK_SHIFT;
+        // Walkable nodes can be one above the top of the map
+        chunksZ = (mapSize.z >> ChunkedBlockStore.CHUNK_SHIFT) + 1;
+        chunkVersions = new int[chunksX * chunksY * chunksZ];
+    }
+
+    /**
+     * Get a cached path that is still valid.
+     * @param start the start
+     * @param goals the goals
+     * @return a copy of the path, null if there is no valid path in the cache
+     */
+    List<MapIndex> get(final MapIndex start, final Collection<? extends MapIndex> goals) {
+        Key key = new Key(start, goals);
+        CachedPath entry = entries.get(key);
+        if (entry != null && !entry.isValid()) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(entry.path);
+    }
+
+    /**
+     * Add a path that has just been found to the cache.
+     * @param start the start
+     * @param goals the goals
+     * @param path the path
+     */
+    void put(final MapIndex start, final Collection<? extends MapIndex> goals, final List<MapIndex> path) {
+        entries.put(new Key(start, goals), new CachedPath(start, path));
+    }
+
+    /**
+     * Gets how many requests have been answered from the cache.
+     * @return the hits
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets how many requests could not be answered from the cache.
+     * @return the misses
+     */
+    long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public void mapChanged(final MapIndex mapIndex) {
+        // The block changes the node in it and the node above it
+        for (int z = mapIndex.z; z <= mapIndex.z + 1; z++) {
+            int chunkIndex = getChunkIndex(mapIndex.x, mapIndex.y, z);
+            if (chunkIndex != -1) {
+                chunkVersions[chunkIndex]++;
+            }
+        }
+    }
+
+    /**
+     * Gets the index of the chunk containing a position.
+     * @param x the x position
+     * @param y the y position
+     * @param z the z position
+     * @return the chunk index, -1 if the position is not on the map
+     */
+    private int getChunkIndex(final int x, final int y, final int z) {
+        int chunkX = x >> ChunkedBlockStore.CHUNK_SHIFT;
+        int chunkY = y >> ChunkedBlockStore.CHUNK_SHIFT;
+        int chunkZ = z >> ChunkedBlockStore.CHUNK_SHIFT;
+        if (x < 0 || y < 0 || z < 0 || chunkY >= chunksY || chunkZ >= chunksZ) {
+            return -1;
+        }
+        int chunkIndex = (chunkX * chunksY + chunkY) * chunksZ + chunkZ;
+        return chunkIndex < chunkVersions.length ? chunkIndex : -1;
+    }
+
+    /**
+     * What a path was found for.
+     */
+    private static class Key {
+
+        /** The start. */
+        private final MapIndex start;
+
+        /** The goals. */
+        private final List<MapIndex> goals;
+
+        /**
+         * Constructor.
+         * @param startTmp the start
+         * @param goalsTmp the goals
+         */
+        Key(final MapIndex startTmp, final Collection<? extends MapIndex> goalsTmp) {
+            start = new MapIndex(startTmp);
+            goals = new ArrayList<MapIndex>(goalsTmp);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return start.equals(other.start) && goals.equals(other.goals);
+        }
+
+        @Override
+        public int hashCode() {
+            return start.hashCode() * 31 + goals.hashCode();
+        }
+    }
+
+    /**
+     * A cached path and the versions of the chunks it crosses.
+     */
+    private class CachedPath {
+
+        /** The path. */
+        private final List<MapIndex> path;
+
+        /** The chunks the path crosses. */
+        private final int[] chunkIndices;
+
+        /** The version of each chunk when the path was found. */
+        private final int[] versions;
+
+        /**
+         * Constructor.
+         * @param start the start of the path
+         * @param pathTmp the path
+         */
+        CachedPath(final MapIndex start, final List<MapIndex> pathTmp) {
+            path = new ArrayList<>(pathTmp);
+            int[] indices = new int[path.size() + 1];
+            int count = 0;
+            indices[count++] = getChunkIndex(start.x, start.y, start.z);
+            for (MapIndex position : path) {
+                int chunkIndex = getChunkIndex(position.x, position.y, position.z);
+                if (chunkIndex != indices[count - 1]) {
+                    indices[count++] = chunkIndex;
+                }
+            }
+            chunkIndices = Arrays.copyOf(indices, count);
+            versions = new int[count];
+            for (int i = 0; i < count; i++) {
+                versions[i] = chunkVersions[chunkIndices[i]];
+            }
+        }
+
+        /**
+         * Checks if none of the chunks the path crosses have changed.
+         * @return true, if the path can still be used
+         */
+        boolean isValid() {
+            for (int i = 0; i < chunkIndices.length; i++) {
+                if (chunkVersions[chunkIndices[i]] != versions[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -32,6 +32,8 @@
 package yadf.simulation.map;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -39,171 +41,712 @@ import yadf.logger.Logger;
 
 /**
  * The Class PathPlanner.
+ * <p>
+ * An A* planner, the open list is a binary heap that supports decreasing the cost of a node already on it. The costs
+ * and parents of the nodes are kept in arrays indexed by node id that belong to the planner rather than in the nodes
+ * themselves, so separate planners can search the same map at the same time. The arrays are reused between searches,
+ * a generation stamp marks which entries belong to the current search so they never need to be cleared.
+ * <p>
+ * A search can use jump point search, on flat ground where every step costs the same most nodes are symmetric, so
+ * instead of opening every neighbour the search jumps in straight lines until it reaches a node that matters (a goal,
+ * a node with a neighbour that could only be reached through it, or a ramp or stairs where it has to go back to
+ * opening every neighbour).
+ * <p>
+ * A path can also be planned a bit at a time, so a long search can be spread over several simulation steps.
  */
 class PathPlanner {
 
     /** How much it costs to walk straight north, south, east, west or up or down. */
-    private static final int COST_OF_SQUARE_MOVEMENT = 10;
+    static final int COST_OF_SQUARE_MOVEMENT = 10;
 
     /** How much it consts to walk diagonally. */
-    private static final int COST_OF_DIAGONAL_MOVEMENT = (int) (COST_OF_SQUARE_MOVEMENT * Math.sqrt(2));
+    static final int COST_OF_DIAGONAL_MOVEMENT = (int) (COST_OF_SQUARE_MOVEMENT * Math.sqrt(2));
+
+    /** The initial size of the node arrays. */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** The current search, entries in the stamp arrays equal to this belong to it. */
+    private int generation = 0;
+
+    /** The search that each node was last opened in. */
+    private int[] openStamps = new int[INITIAL_CAPACITY];
+
+    /** The search that each node was last closed in. */
+    private int[] closedStamps = new int[INITIAL_CAPACITY];
+
+    /** The cost of getting to each node from the start. */
+    private int[] gCosts = new int[INITIAL_CAPACITY];
+
+    /** The estimated cost of getting from each node to the goal. */
+    private int[] hCosts = new int[INITIAL_CAPACITY];
+
+    /** The parent of each node, i.e. the node it is reached from. */
+    private WalkableNode[] parents = new WalkableNode[INITIAL_CAPACITY];
+
+    /** The position of each node in the open list heap. */
+    private int[] heapIndices = new int[INITIAL_CAPACITY];
+
+    /** The open list, a binary heap ordered by F cost. */
+    private WalkableNode[] heap = new WalkableNode[INITIAL_CAPACITY];
+
+    /** The number of nodes in the open list. */
+    private int heapSize;
+
+    /** The lowest corner of the area the current search is limited to, null if it is not limited. */
+    private MapIndex boundsMin;
+
+    /** The highest corner of the area the current search is limited to. */
+    private MapIndex boundsMax;
+
+    /** The number of nodes taken off the open list by the current (or last) search. */
+    private int expandedCount;
+
+    /** The start of the path being planned. */
+    private WalkableNode searchStart;
+
+    /** The goals of the path being planned. */
+    private Collection<? extends MapIndex> searchGoals;
+
+    /** True if the path being planned uses jump point search. */
+    private boolean searchJumpPoints;
+
+    /** The path found by the last search, null if there was no path. */
+    private List<MapIndex> foundPath;
 
     /**
      * Plan a path.
      * @param start the start
      * @param goal the goal
-     * @return the list
+     * @return the path, from the goal back to (but not including) the start, null if there is no path
      */
     public List<MapIndex> findPath(final WalkableNode start, final MapIndex goal) {
-        List<MapIndex> path = new ArrayList<>();
-        SortedList openList = new SortedList();
-        List<WalkableNode> closedList = new ArrayList<>();
-        WalkableNode current;
+        return findPath(start, Collections.singletonList(goal), null, null);
+    }
 
-        start.g = 0;
-        start.h = (Math.abs(goal.x - start.x) + Math.abs(goal.y - start.y) + Math.abs(goal.z - start.z))
-                * COST_OF_SQUARE_MOVEMENT;
-        start.f = start.g + start.h;
+    /**
+     * Plan a path to whichever of several goals is closest, using a single search.
+     * @param start the start
+     * @param goals the goals
+     * @return the path, from the goal back to (but not including) the start, null if there is no path to any goal
+     */
+    List<MapIndex> findPath(final WalkableNode start, final Collection<? extends MapIndex> goals) {
+        return findPath(start, goals, null, null);
+    }
 
-        // 1) Add the starting square (or node) to the open list.
-        openList.add(start);
+    /**
+     * Plan a path that stays within an area.
+     * @param start the start
+     * @param goal the goal
+     * @param min the lowest corner of the area, null if the path can go anywhere
+     * @param max the highest corner of the area
+     * @return the path, from the goal back to (but not including) the start, null if there is no path
+     */
+    List<MapIndex> findPath(final WalkableNode start, final MapIndex goal, final MapIndex min, final MapIndex max) {
+        return findPath(start, Collections.singletonList(goal), min, max);
+    }
 
-        // 2) Repeat the following:
-        while (true) {
-            // a) Look for the lowest F cost square on the open list. We refer to this as the current square.
-            current = openList.first();
-
-            // b) Switch it to the closed list.
-            openList.remove(current);
-            closedList.add(current);
-
-            // c) For each of the 8 squares adjacent to this current square...
-            for (WalkableNode adjacent : current.adjacencies) {
-                // If it is not walkable or if it is on the closed list, ignore it. Otherwise do the following.
-                if (closedList.contains(adjacent)) {
-                    continue;
-                }
+    /**
+     * Plan a path to whichever of several goals is closest that stays within an area, the search is seeded with the
+     * distance to the nearest goal so it is no slower than a search for one of them.
+     * @param start the start
+     * @param goals the goals
+     * @param min the lowest corner of the area, null if the path can go anywhere
+     * @param max the highest corner of the area
+     * @return the path, from the goal back to (but not including) the start, null if there is no path to any goal
+     */
+    List<MapIndex> findPath(final WalkableNode start, final Collection<? extends MapIndex> goals,
+            final MapIndex min, final MapIndex max) {
+        return findPath(start, goals, min, max, false);
+    }
 
-                if (!openList.contains(adjacent)) {
-                    // If it isnt on the open list, add it to the open list. Make the current square the parent of this
-                    // square. Record the F, G, and H costs of the square.
-                    openList.add(adjacent);
-
-                    adjacent.parent = current;
-
-                    if (adjacent.x == current.x || adjacent.y == current.y) {
-                        adjacent.g = current.g + COST_OF_SQUARE_MOVEMENT;
-                    } else {
-                        adjacent.g = current.g + COST_OF_DIAGONAL_MOVEMENT;
-                    }
-                    adjacent.h = (Math.abs(goal.x - adjacent.x) + Math.abs(goal.y - adjacent.y) + Math.abs(goal.z
-                            - adjacent.z))
-                            * COST_OF_SQUARE_MOVEMENT;
-                    adjacent.f = adjacent.g + adjacent.h;
-                } else {
-                    // If it is on the open list already, check to see if this path to that square is better, using G
-                    // cost as the measure. A lower G cost means that this is a better path. If so, change the parent of
-                    // the square to the current square, and recalculate the G and F scores of the square. If you are
-                    // keeping your open list sorted by F score, you may need to resort the list to account for the
-                    // change.
-                    int newG;
-
-                    if (adjacent.x == current.x || adjacent.y == current.y) {
-                        newG = current.g + COST_OF_SQUARE_MOVEMENT;
-                    } else {
-                        newG = current.g + COST_OF_DIAGONAL_MOVEMENT;
-                    }
-
-                    if (newG < adjacent.g) {
-                        adjacent.parent = current;
-                        adjacent.g = newG;
-                        adjacent.f = adjacent.g + adjacent.h;
-                        openList.sort();
-                    }
-                }
+    /**
+     * Plan a path to whichever of several goals is closest, choosing whether to use jump point search.
+     * @param start the start
+     * @param goals the goals
+     * @param jumpPointSearch true to use jump point search
+     * @return the path, from the goal back to (but not including) the start, null if there is no path to any goal
+     */
+    List<MapIndex> findPath(final WalkableNode start, final Collection<? extends MapIndex> goals,
+            final boolean jumpPointSearch) {
+        return findPath(start, goals, null, null, jumpPointSearch);
+    }
+
+    /**
+     * Plan a path to whichever of several goals is closest that stays within an area, choosing whether to use jump
+     * point search.
+     * @param start the start
+     * @param goals the goals
+     * @param min the lowest corner of the area, null if the path can go anywhere
+     * @param max the highest corner of the area
+     * @param jumpPointSearch true to use jump point search
+     * @return the path, from the goal back to (but not including) the start, null if there is no path to any goal
+     */
+    private List<MapIndex> findPath(final WalkableNode start, final Collection<? extends MapIndex> goals,
+            final MapIndex min, final MapIndex max, final boolean jumpPointSearch) {
+        beginPath(start, goals, min, max, jumpPointSearch);
+        continuePath(Integer.MAX_VALUE);
+        return getPath();
+    }
+
+    /**
+     * Begin planning a path that can be planned a bit at a time with {@link #continuePath(int)}, the planner must not
+     * be used for anything else until the path has been found.
+     * @param start the start
+     * @param goals the goals
+     * @param min the lowest corner of the area, null if the path can go anywhere
+     * @param max the highest corner of the area
+     * @param jumpPointSearch true to use jump point search
+     */
+    void beginPath(final WalkableNode start, final Collection<? extends MapIndex> goals, final MapIndex min,
+            final MapIndex max, final boolean jumpPointSearch) {
+        startSearch(min, max);
+        searchStart = start;
+        searchGoals = goals;
+        searchJumpPoints = jumpPointSearch;
+        foundPath = null;
+        if (!goals.isEmpty()) {
+            open(start, null, 0, getHeuristic(start, goals));
+        }
+    }
+
+    /**
+     * Carry on planning the path that was begun with {@link #beginPath}.
+     * @param maxNodes the most nodes to expand before giving up for now
+     * @return true if the search has finished, the path can then be got with {@link #getPath()}
+     */
+    boolean continuePath(final int maxNodes) {
+        for (int nodes = 0; heapSize > 0; nodes++) {
+            if (nodes == maxNodes) {
+                return false;
             }
 
-            // d) Stop when you:
-            // Add the target square to the closed list, in which case the path has been found (see note below)
-            if (current.equals(goal)) {
-                break;
+            // Take the node with the lowest F cost off the open list and close it
+            WalkableNode current = poll();
+            closedStamps[current.id] = generation;
+            expandedCount++;
+
+            if (searchGoals.contains(current)) {
+                finishPath(buildPath(searchStart, current));
+                return true;
             }
 
-            // Fail to find the target square, and the open list is empty. In this case, there is no path.
-            if (openList.size() == 0) {
-                Logger.getInstance().log(this, "Open list is empty (No possible path)");
-                return null;
+            if (searchJumpPoints) {
+                expandJumpPoints(current, searchGoals);
+            } else {
+                expand(current, searchGoals);
             }
         }
 
-        // 3) Save the path. Working backwards from the target square, go from each square to its parent square until
-        // you reach the starting square. That is your path.
-        while (current != null && !current.equals(start)) {
-            path.add(current);
-            current = current.parent;
+        if (!searchGoals.isEmpty()) {
+            Logger.getInstance().log(this, "Open list is empty (No possible path)");
         }
+        finishPath(null);
+        return true;
+    }
 
-        return path;
+    /**
+     * Finish the current search with a path, for when it was found some other way.
+     * @param path the path, null if there is no path
+     */
+    void finishPath(final List<MapIndex> path) {
+        foundPath = path;
+        heapSize = 0;
+        searchStart = null;
+        searchGoals = null;
+    }
+
+    /**
+     * Gets the path found by the last search that has finished.
+     * @return the path, from the goal back to (but not including) the start, null if there is no path
+     */
+    List<MapIndex> getPath() {
+        return foundPath;
+    }
+
+    /**
+     * Find the cost of the cheapest path from a node to each of a list of targets, without leaving an area.
+     * @param start the start
+     * @param targets the targets
+     * @param min the lowest corner of the area
+     * @param max the highest corner of the area
+     * @return the cost to each target, Integer.MAX_VALUE if it can't be reached
+     */
+    int[] findCosts(final WalkableNode start, final List<? extends WalkableNode> targets, final MapIndex min,
+            final MapIndex max) {
+        startSearch(min, max);
+        open(start, null, 0, 0);
+        while (heapSize > 0) {
+            WalkableNode current = poll();
+            closedStamps[current.id] = generation;
+            expand(current, null);
+        }
+
+        int[] costs = new int[targets.size()];
+        for (int i = 0; i < costs.length; i++) {
+            WalkableNode target = targets.get(i);
+            if (target.id < closedStamps.length && closedStamps[target.id] == generation) {
+                costs[i] = gCosts[target.id];
+            } else {
+                costs[i] = Integer.MAX_VALUE;
+            }
+        }
+        return costs;
     }
 
     /**
-     * A simple sorted list.
-     * 
-     * kevin
-     * http://code.google.com/p/dronedefense/source/browse/DroidDefense/src/com/stropheware/pathfinding/Node.java?r=46
+     * Work out a field of the cost of the cheapest path from every node in an area to the nearest of several sources,
+     * without leaving the area.
+     * @param sources the sources
+     * @param min the lowest corner of the area
+     * @param max the highest corner of the area
+     * @return the field
      */
-    private class SortedList {
+    DistanceField findDistanceField(final List<WalkableNode> sources, final MapIndex min, final MapIndex max) {
+        startSearch(min, max);
+        for (WalkableNode source : sources) {
+            ensureCapacity(source.id);
+            if (openStamps[source.id] != generation && isInBounds(source)) {
+                open(source, null, 0, 0);
+            }
+        }
+        List<WalkableNode> reachedNodes = new ArrayList<>();
+        while (heapSize > 0) {
+            WalkableNode current = poll();
+            closedStamps[current.id] = generation;
+            reachedNodes.add(current);
+            expand(current, null);
+        }
+
+        int[] distances = new int[reachedNodes.size()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = gCosts[reachedNodes.get(i).id];
+        }
+        return new DistanceField(min, max, reachedNodes, distances);
+    }
 
-        /** The list of elements. */
-        private final List<WalkableNode> list = new ArrayList<>();
+    /**
+     * Gets the number of nodes expanded by the last search, used to compare searches.
+     * @return the number of nodes
+     */
+    int getExpandedCount() {
+        return expandedCount;
+    }
 
-        /**
-         * Add an element to the list - causes sorting.
-         * @param o The element to add
-         */
-        public void add(final WalkableNode o) {
-            list.add(o);
-            Collections.sort(list);
+    /**
+     * Add the adjacencies of a node to the open list, or update their costs if this is a better path to them.
+     * @param current the node being expanded
+     * @param goals the goals, null for a search without a heuristic
+     */
+    private void expand(final WalkableNode current, final Collection<? extends MapIndex> goals) {
+        int currentG = gCosts[current.id];
+        for (WalkableNode adjacent : current.adjacencies) {
+            ensureCapacity(adjacent.id);
+            if (closedStamps[adjacent.id] == generation || !isInBounds(adjacent)) {
+                continue;
+            }
+            reach(adjacent, current, currentG + getMovementCost(current, adjacent), goals);
         }
+    }
 
-        /**
-         * Check if an element is in the list.
-         * @param o The element to search for
-         * @return True if the element is in the list
-         */
-        public boolean contains(final WalkableNode o) {
-            return list.contains(o);
+    /**
+     * Add the jump points reachable from a node to the open list, or update their costs if this is a better path to
+     * them. Only the directions that can't be reached more cheaply without going through the node are followed.
+     * @param current the node being expanded
+     * @param goals the goals
+     */
+    private void expandJumpPoints(final WalkableNode current, final Collection<? extends MapIndex> goals) {
+        WalkableNode parent = parents[current.id];
+        if (parent == null || parent.z != current.z || !isFlat(current)) {
+            expand(current, goals);
+            return;
         }
 
-        /**
-         * Retrieve the first element from the list.
-         * @return The first element from the list
-         */
-        public WalkableNode first() {
-            return list.get(0);
+        int dx = Integer.signum(current.x - parent.x);
+        int dy = Integer.signum(current.y - parent.y);
+        if (dx != 0 && dy != 0) {
+            jumpFrom(current, dx, 0, goals);
+            jumpFrom(current, 0, dy, goals);
+            jumpFrom(current, dx, dy, goals);
+        } else {
+            jumpFrom(current, dx, dy, goals);
+        }
+        // The forced neighbours
+        if (dx != 0 && dy != 0) {
+            if (!isWalkable(current, -dx, 0) && isWalkable(current, -dx, dy)) {
+                jumpFrom(current, -dx, dy, goals);
+            }
+            if (!isWalkable(current, 0, -dy) && isWalkable(current, dx, -dy)) {
+                jumpFrom(current, dx, -dy, goals);
+            }
+        } else if (dx != 0) {
+            if (!isWalkable(current, 0, 1) && isWalkable(current, dx, 1)) {
+                jumpFrom(current, dx, 1, goals);
+            }
+            if (!isWalkable(current, 0, -1) && isWalkable(current, dx, -1)) {
+                jumpFrom(current, dx, -1, goals);
+            }
+        } else {
+            if (!isWalkable(current, 1, 0) && isWalkable(current, 1, dy)) {
+                jumpFrom(current, 1, dy, goals);
+            }
+            if (!isWalkable(current, -1, 0) && isWalkable(current, -1, dy)) {
+                jumpFrom(current, -1, dy, goals);
+            }
         }
+    }
 
-        /**
-         * Remove an element from the list.
-         * @param o The element to remove
-         */
-        public void remove(final WalkableNode o) {
-            list.remove(o);
+    /**
+     * Jump from a node in a direction, and add the jump point that is found to the open list.
+     * @param current the node being expanded
+     * @param dx the x direction
+     * @param dy the y direction
+     * @param goals the goals
+     */
+    private void jumpFrom(final WalkableNode current, final int dx, final int dy,
+            final Collection<? extends MapIndex> goals) {
+        WalkableNode jumpPoint = jump(current, dx, dy, goals);
+        if (jumpPoint == null || closedStamps[jumpPoint.id] == generation) {
+            return;
         }
+        int steps = Math.max(Math.abs(jumpPoint.x - current.x), Math.abs(jumpPoint.y - current.y));
+        int stepCost = dx != 0 && dy != 0 ? COST_OF_DIAGONAL_MOVEMENT : COST_OF_SQUARE_MOVEMENT;
+        reach(jumpPoint, current, gCosts[current.id] + steps * stepCost, goals);
+    }
 
-        /**
-         * Get the number of elements in the list.
-         * @return The number of element in the list
-         */
-        public int size() {
-            return list.size();
+    /**
+     * Keep stepping from a node in a direction until a jump point is found.
+     * @param from the node to jump from
+     * @param dx the x direction
+     * @param dy the y direction
+     * @param goals the goals
+     * @return the jump point, null if a dead end was reached first
+     */
+    private WalkableNode jump(final WalkableNode from, final int dx, final int dy,
+            final Collection<? extends MapIndex> goals) {
+        WalkableNode node = getNeighbour(from, dx, dy);
+        while (node != null) {
+            ensureCapacity(node.id);
+            if (goals.contains(node) || !isFlat(node) || hasForcedNeighbour(node, dx, dy)) {
+                return node;
+            }
+            // A diagonal jump stops where a straight jump from it would find something
+            if (dx != 0 && dy != 0 && (jump(node, dx, 0, goals) != null || jump(node, 0, dy, goals) != null)) {
+                return node;
+            }
+            node = getNeighbour(node, dx, dy);
         }
+        return null;
+    }
 
-        /**
-         * Sort.
-         */
-        public void sort() {
-            Collections.sort(list);
+    /**
+     * Checks if a node being jumped over has a neighbour that could only be reached (as cheaply) through it.
+     * @param node the node
+     * @param dx the x direction of the jump
+     * @param dy the y direction of the jump
+     * @return true, if the node is a jump point
+     */
+    private boolean hasForcedNeighbour(final WalkableNode node, final int dx, final int dy) {
+        if (dx != 0 && dy != 0) {
+            return (!isWalkable(node, -dx, 0) && isWalkable(node, -dx, dy))
+                    || (!isWalkable(node, 0, -dy) && isWalkable(node, dx, -dy));
+        }
+        if (dx != 0) {
+            return (!isWalkable(node, 0, 1) && isWalkable(node, dx, 1))
+                    || (!isWalkable(node, 0, -1) && isWalkable(node, dx, -1));
+        }
+        return (!isWalkable(node, 1, 0) && isWalkable(node, 1, dy))
+                || (!isWalkable(node, -1, 0) && isWalkable(node, -1, dy));
+    }
+
+    /**
+     * Checks if a node has a neighbour on the same level in a direction.
+     * @param node the node
+     * @param dx the x direction
+     * @param dy the y direction
+     * @return true, if the neighbour can be walked to
+     */
+    private boolean isWalkable(final WalkableNode node, final int dx, final int dy) {
+        return getNeighbour(node, dx, dy) != null;
+    }
+
+    /**
+     * Gets the neighbour of a node on the same level in a direction.
+     * @param node the node
+     * @param dx the x direction
+     * @param dy the y direction
+     * @return the neighbour, null if there isn't one or it is outside the area of the search
+     */
+    private WalkableNode getNeighbour(final WalkableNode node, final int dx, final int dy) {
+        for (WalkableNode adjacent : node.adjacencies) {
+            if (adjacent.x == node.x + dx && adjacent.y == node.y + dy && adjacent.z == node.z) {
+                return isInBounds(adjacent) ? adjacent : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks if all of a node's neighbours are on the same level as it, i.e. it is not next to a ramp or stairs.
+     * @param node the node
+     * @return true, if jump point search can jump over the node
+     */
+    private static boolean isFlat(final WalkableNode node) {
+        for (WalkableNode adjacent : node.adjacencies) {
+            if (adjacent.z != node.z) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A node has been reached from another node, add it to the open list or update its cost if this is a better path
+     * to it.
+     * @param node the node that was reached
+     * @param parent the node it was reached from
+     * @param g the cost of getting to the node this way
+     * @param goals the goals, null for a search without a heuristic
+     */
+    private void reach(final WalkableNode node, final WalkableNode parent, final int g,
+            final Collection<? extends MapIndex> goals) {
+        if (openStamps[node.id] != generation) {
+            open(node, parent, g, goals == null ? 0 : getHeuristic(node, goals));
+        } else if (g < gCosts[node.id]) {
+            // This is a better path to a node already on the open list
+            parents[node.id] = parent;
+            gCosts[node.id] = g;
+            siftUp(heapIndices[node.id]);
+        }
+    }
+
+    /**
+     * Checks if a node is within the area the current search is limited to.
+     * @param node the node
+     * @return true, if the search can use the node
+     */
+    private boolean isInBounds(final MapIndex node) {
+        return boundsMin == null
+                || (node.x >= boundsMin.x && node.x <= boundsMax.x && node.y >= boundsMin.y && node.y <= boundsMax.y
+                        && node.z >= boundsMin.z && node.z <= boundsMax.z);
+    }
+
+    /**
+     * Gets the cost of moving between two adjacent nodes.
+     * @param from the node being moved from
+     * @param to the node being moved to
+     * @return the cost
+     */
+    static int getMovementCost(final MapIndex from, final MapIndex to) {
+        if (from.x == to.x || from.y == to.y) {
+            return COST_OF_SQUARE_MOVEMENT;
+        }
+        return COST_OF_DIAGONAL_MOVEMENT;
+    }
+
+    /**
+     * Gets the estimated cost of getting from a position to the goal, this is the Manhattan distance so it
+     * overestimates diagonal paths, which keeps the search narrow but means the path found may not be the cheapest.
+     * @param position the position
+     * @param goal the goal
+     * @return the estimated cost
+     */
+    static int getHeuristic(final MapIndex position, final MapIndex goal) {
+        return position.distance(goal) * COST_OF_SQUARE_MOVEMENT;
+    }
+
+    /**
+     * Gets a lower bound on the cost of getting from a position to the goal, i.e. the cost with nothing in the way.
+     * Unlike {@link #getHeuristic(MapIndex, MapIndex)} it never overestimates, so a search using it finds the
+     * cheapest path.
+     * @param position the position
+     * @param goal the goal
+     * @return the estimated cost
+     */
+    static int getOctileHeuristic(final MapIndex position, final MapIndex goal) {
+        int dx = Math.abs(position.x - goal.x);
+        int dy = Math.abs(position.y - goal.y);
+        int dz = Math.abs(position.z - goal.z);
+        int flatCost = Math.max(dx, dy) * COST_OF_SQUARE_MOVEMENT + Math.min(dx, dy)
+                * (COST_OF_DIAGONAL_MOVEMENT - COST_OF_SQUARE_MOVEMENT);
+        // Every step changes the level by at most one
+        return Math.max(flatCost, dz * COST_OF_SQUARE_MOVEMENT);
+    }
+
+    /**
+     * Gets the estimated cost of getting from a position to the nearest of several goals. Both kinds of search use the
+     * octile heuristic, so they both find the cheapest path and their paths cost the same.
+     * @param position the position
+     * @param goals the goals
+     * @return the estimated cost
+     */
+    private int getHeuristic(final MapIndex position, final Collection<? extends MapIndex> goals) {
+        int heuristic = Integer.MAX_VALUE;
+        for (MapIndex goal : goals) {
+            int goalHeuristic = getOctileHeuristic(position, goal);
+            heuristic = Math.min(heuristic, goalHeuristic);
+        }
+        return heuristic;
+    }
+
+    /**
+     * Start a new search, making all the entries from previous searches stale.
+     * @param min the lowest corner of the area the search is limited to, null if it is not limited
+     * @param max the highest corner of the area the search is limited to
+     */
+    private void startSearch(final MapIndex min, final MapIndex max) {
+        boundsMin = min;
+        boundsMax = max;
+        heapSize = 0;
+        expandedCount = 0;
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(openStamps, 0);
+            Arrays.fill(closedStamps, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Save the path, working backwards from the goal to the start following the parents.
+     * @param start the start
+     * @param goal the goal
+     * @return the path
+     */
+    private List<MapIndex> buildPath(final WalkableNode start, final WalkableNode goal) {
+        List<MapIndex> path = new ArrayList<>();
+        WalkableNode current = goal;
+        while (current != null && !current.equals(start)) {
+            path.add(current);
+            WalkableNode parent = parents[current.id];
+            // Jump point search skips over the nodes in a straight line between a node and its parent
+            if (parent != null) {
+                int dx = Integer.signum(parent.x - current.x);
+                int dy = Integer.signum(parent.y - current.y);
+                int steps = Math.max(Math.abs(parent.x - current.x), Math.abs(parent.y - current.y));
+                for (int i = 1; i < steps; i++) {
+                    path.add(new MapIndex(current.x + dx * i, current.y + dy * i, current.z));
+                }
+            }
+            current = parent;
+        }
+        return path;
+    }
+
+    /**
+     * Add a node to the open list.
+     * @param node the node
+     * @param parent the node it was reached from
+     * @param g the cost of getting to the node
+     * @param h the estimated cost of getting from the node to the goal
+     */
+    private void open(final WalkableNode node, final WalkableNode parent, final int g, final int h) {
+        ensureCapacity(node.id);
+        openStamps[node.id] = generation;
+        parents[node.id] = parent;
+        gCosts[node.id] = g;
+        hCosts[node.id] = h;
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        heap[heapSize] = node;
+        heapIndices[node.id] = heapSize;
+        heapSize++;
+        siftUp(heapSize - 1);
+    }
+
+    /**
+     * Remove the node with the lowest F cost from the open list.
+     * @return the node
+     */
+    private WalkableNode poll() {
+        WalkableNode first = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndices[heap[0].id] = 0;
+            siftDown(0);
+        }
+        heap[heapSize] = null;
+        return first;
+    }
+
+    /**
+     * Move a node up the heap until its parent is not more expensive.
+     * @param index the index of the node in the heap
+     */
+    private void siftUp(final int index) {
+        WalkableNode node = heap[index];
+        int i = index;
+        while (i > 0) {
+            int parentIndex = (i - 1) >> 1;
+            WalkableNode parent = heap[parentIndex];
+            if (!isCheaper(node, parent)) {
+                break;
+            }
+            heap[i] = parent;
+            heapIndices[parent.id] = i;
+            i = parentIndex;
+        }
+        heap[i] = node;
+        heapIndices[node.id] = i;
+    }
+
+    /**
+     * Move a node down the heap until neither of its children are cheaper.
+     * @param index the index of the node in the heap
+     */
+    private void siftDown(final int index) {
+        WalkableNode node = heap[index];
+        int i = index;
+        while (true) {
+            int childIndex = (i << 1) + 1;
+            if (childIndex >= heapSize) {
+                break;
+            }
+            if (childIndex + 1 < heapSize && isCheaper(heap[childIndex + 1], heap[childIndex])) {
+                childIndex++;
+            }
+            WalkableNode child = heap[childIndex];
+            if (!isCheaper(child, node)) {
+                break;
+            }
+            heap[i] = child;
+            heapIndices[child.id] = i;
+            i = childIndex;
+        }
+        heap[i] = node;
+        heapIndices[node.id] = i;
+    }
+
+    /**
+     * Compare two nodes on the open list by F cost, ties are broken in favour of the node closest to the goal.
+     * @param node the first node
+     * @param other the second node
+     * @return true if the first node should be expanded before the second
+     */
+    private boolean isCheaper(final WalkableNode node, final WalkableNode other) {
+        int f = gCosts[node.id] + hCosts[node.id];
+        int otherF = gCosts[other.id] + hCosts[other.id];
+        if (f != otherF) {
+            return f < otherF;
+        }
+        return hCosts[node.id] < hCosts[other.id];
+    }
+
+    /**
+     * Grow the node arrays so they can hold a node id.
+     * @param id the node id
+     */
+    private void ensureCapacity(final int id) {
+        if (id < openStamps.length) {
+            return;
         }
+        int capacity = Math.max(openStamps.length * 2, id + 1);
+        openStamps = Arrays.copyOf(openStamps, capacity);
+        closedStamps = Arrays.copyOf(closedStamps, capacity);
+        gCosts = Arrays.copyOf(gCosts, capacity);
+        hCosts = Arrays.copyOf(hCosts, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        heapIndices = Arrays.copyOf(heapIndices, capacity);
     }
 }
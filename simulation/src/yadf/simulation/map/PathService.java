@@ -0,0 +1,283 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import yadf.logger.Logger;
+
+/**
+ * Finds paths on the worker threads of the map's {@link ITaskRunner} instead of the simulation thread.
+ * <p>
+ * Requests made during a simulation step are held until the end of the step, then they are all started, highest
+ * priority first, and searched while the game is between steps. They are all finished before the map is next changed,
+ * so every search sees the map exactly as it was at the end of the step it was requested in, and the result is ready at
+ * the start of the next step no matter how fast the workers are. This keeps the simulation deterministic. Paths that
+ * have been found recently are cached, and a request for one of them is answered straight away.
+ * <p>
+ * The searches of each step share a budget of nodes, and each search can only expand a slice of it, so one bad search
+ * can't hold up a step. A search that runs out carries on in the next step, and requests that don't fit in the budget
+ * wait for a later step. If the task runner has no worker threads the searches are done on the simulation thread
+ * instead.
+ * <p>
+ * All the methods must be called from the simulation thread.
+ */
+public class PathService {
+
+    /** The priority to use for a request that is no more urgent than any other. */
+    public static final int DEFAULT_PRIORITY = 0;
+
+    /** The most nodes that all the searches can expand between two simulation steps. */
+    private static final int STEP_NODE_BUDGET = 100000;
+
+    /** The most nodes one search can expand between two simulation steps. */
+    private static final int SLICE_NODE_BUDGET = 5000;
+
+    /** Orders requests by priority, highest first, then by when they were made. */
+    private static final Comparator<PathRequest> PRIORITY_ORDER = new Comparator<PathRequest>() {
+        @Override
+        public int compare(final PathRequest o1, final PathRequest o2) {
+            if (o1.priority != o2.priority) {
+                return Integer.compare(o2.priority, o1.priority);
+            }
+            return Long.compare(o1.number, o2.number);
+        }
+    };
+
+    /** The map to find paths on. */
+    private final RegionMap map;
+
+    /** Requests that are waiting to be started or carried on. */
+    private final List<PathRequest> waitingRequests = new ArrayList<>();
+
+    /** Requests that have been started or carried on this step. */
+    private final List<PathRequest> startedRequests = new ArrayList<>();
+
+    /** The slices of the started requests being searched on the worker threads. */
+    private final List<IStartedTask> slices = new ArrayList<>();
+
+    /** Planners that are not being used by a request. */
+    private final List<PathPlanner> idlePlanners = new ArrayList<>();
+
+    /** The number of requests made so far. */
+    private long requestCount;
+
+    /**
+     * Constructor.
+     * @param mapTmp the map to find paths on
+     */
+    PathService(final RegionMap mapTmp) {
+        map = mapTmp;
+    }
+
+    /**
+     * Request a path, the result will be ready at the start of a later simulation step, the path must not be got from
+     * the ticket until it is done.
+     * @param start the position to start from
+     * @param goals the positions to go to, the path will be to the closest of these that can be reached
+     * @param priority the priority, requests with a higher priority are started first
+     * @return the ticket for the path, the path will be null if none of the goals can be reached
+     */
+    public PathTicket requestPath(final MapIndex start, final Collection<? extends MapIndex> goals,
+            final int priority) {
+        MapIndex startCopy = new MapIndex(start);
+        List<MapIndex> goalsCopy = new ArrayList<MapIndex>(goals);
+        map.getFlowFieldCache().requested(goalsCopy);
+
+        PathRequest request = new PathRequest(startCopy, goalsCopy, priority, requestCount++);
+
+        // A repeated request can be answered straight away
+        List<MapIndex> cachedPath = map.getPathCache().get(startCopy, goalsCopy);
+        if (cachedPath != null) {
+            request.finish(cachedPath, goalsCopy);
+        } else {
+            waitingRequests.add(request);
+        }
+        return request;
+    }
+
+    /**
+     * Start (or carry on) as many of the waiting requests as fit in the budget, highest priority first, should be
+     * called at the end of a simulation step.
+     */
+    public void startRequests() {
+        if (waitingRequests.isEmpty()) {
+            return;
+        }
+        map.prepareForSearches();
+        Collections.sort(waitingRequests, PRIORITY_ORDER);
+        int budget = STEP_NODE_BUDGET;
+        Iterator<PathRequest> iterator = waitingRequests.iterator();
+        while (iterator.hasNext()) {
+            PathRequest request = iterator.next();
+            // Always start at least one, so a search with a big slice still gets done
+            if (request.sliceNodes > budget && !startedRequests.isEmpty()) {
+                break;
+            }
+            budget -= request.sliceNodes;
+            iterator.remove();
+            if (request.planner == null) {
+                request.planner = idlePlanners.isEmpty() ? new PathPlanner() : idlePlanners.remove(idlePlanners
+                        .size() - 1);
+            }
+            startedRequests.add(request);
+            slices.add(RegionMap.getTaskRunner().start(request));
+        }
+    }
+
+    /**
+     * Wait for the started requests to finish their slices, should be called at the start of a simulation step and
+     * before the map changes. The requests that have not found their path yet wait to be carried on.
+     */
+    public void finishRequests() {
+        // Every slice has to finish even if the thread is interrupted, or a planner could be used by two threads
+        for (IStartedTask slice : slices) {
+            try {
+                slice.waitUntilDone();
+            } catch (IllegalStateException e) {
+                Logger.getInstance().log(this, "Path request failed: " + e.getCause(), true);
+            }
+        }
+        slices.clear();
+
+        // The paths are cached in the order the requests were started, so the cache is the same no matter which
+        // worker finished first
+        for (PathRequest request : startedRequests) {
+            if (request.isDone()) {
+                idlePlanners.add(request.planner);
+                request.planner = null;
+                List<MapIndex> path = request.getPath();
+                if (path != null) {
+                    map.getPathCache().put(request.start, request.goals, path);
+                }
+            } else {
+                waitingRequests.add(request);
+            }
+        }
+        startedRequests.clear();
+    }
+
+    /**
+     * The map has changed, so the searches that have been begun but not finished have to begin again. They are given
+     * a bigger slice each time so they still finish on a map that keeps changing.
+     */
+    void restartRequests() {
+        for (PathRequest request : waitingRequests) {
+            if (request.begun) {
+                request.begun = false;
+                request.sliceNodes = Math.min(request.sliceNodes * 2, STEP_NODE_BUDGET);
+            }
+        }
+    }
+
+    /**
+     * Gets how many requests have been answered from the path cache.
+     * @return the number of cache hits
+     */
+    public long getCacheHits() {
+        return map.getPathCache().getHits();
+    }
+
+    /**
+     * Gets how many requests could not be answered from the path cache.
+     * @return the number of cache misses
+     */
+    public long getCacheMisses() {
+        return map.getPathCache().getMisses();
+    }
+
+    /**
+     * A request for a path, each time it is run it searches for one slice.
+     */
+    private final class PathRequest extends PathTicket implements Runnable {
+
+        /** The start. */
+        private final MapIndex start;
+
+        /** The goals. */
+        private final List<MapIndex> goals;
+
+        /** The priority. */
+        private final int priority;
+
+        /** The number of the request, the order it was made in. */
+        private final long number;
+
+        /** The most nodes to expand each time the request is run. */
+        private int sliceNodes = SLICE_NODE_BUDGET;
+
+        /** The planner doing the search, null if the request is not being searched. */
+        private PathPlanner planner;
+
+        /** True if the search has been begun. */
+        private boolean begun;
+
+        /**
+         * Constructor.
+         * @param startTmp the start
+         * @param goalsTmp the goals
+         * @param priorityTmp the priority
+         * @param numberTmp the number of the request
+         */
+        PathRequest(final MapIndex startTmp, final List<MapIndex> goalsTmp, final int priorityTmp,
+                final long numberTmp) {
+            start = startTmp;
+            goals = goalsTmp;
+            priority = priorityTmp;
+            number = numberTmp;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!begun) {
+                    begun = true;
+                    if (map.beginPath(planner, start, goals)) {
+                        finish(planner.getPath(), goals);
+                        return;
+                    }
+                }
+                if (planner.continuePath(sliceNodes)) {
+                    finish(planner.getPath(), goals);
+                }
+            } catch (RuntimeException e) {
+                Logger.getInstance().log(this, "Path request failed: " + e, true);
+                finish(null, goals);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A path that has been requested from the {@link PathService}, the path can be got once the ticket is done.
+ * <p>
+ * Requests are only finished by the path service between simulation steps, so nothing ever needs to wait for a ticket,
+ * it should be checked again in a later step instead.
+ */
+public class PathTicket {
+
+    /** The path that was found. */
+    private List<MapIndex> path;
+
+    /** True if the path ends before the goals, so another path has to be found from its end. */
+    private boolean partial;
+
+    /** True once the path has been found, or it is known that there is no path. */
+    private volatile boolean done;
+
+    /**
+     * Checks if the path has been found.
+     * @return true, if the path can be got
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Gets the path, the ticket must be done.
+     * @return the path, from the goal back to (but not including) the start, null if none of the goals can be reached
+     */
+    public List<MapIndex> getPath() {
+        if (!done) {
+            throw new IllegalStateException("The path has not been found yet");
+        }
+        return path;
+    }
+
+    /**
+     * Checks if the path only goes part of the way, long paths are found a part at a time, the ticket must be done.
+     * @return true, if the path ends before the goals
+     */
+    public boolean isPartial() {
+        if (!done) {
+            throw new IllegalStateException("The path has not been found yet");
+        }
+        return partial;
+    }
+
+    /**
+     * Finish the ticket.
+     * @param pathTmp the path, null if there is no path
+     * @param goals the goals that the path was requested to
+     */
+    void finish(final List<MapIndex> pathTmp, final Collection<? extends MapIndex> goals) {
+        path = pathTmp;
+        partial = path != null && !path.isEmpty() && !goals.contains(path.get(0));
+        done = true;
+    }
+}
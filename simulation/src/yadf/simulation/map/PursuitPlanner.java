@@ -0,0 +1,172 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Plans the steps of characters chasing other characters.
+ * <p>
+ * Rather than each chaser searching for a path to its pursuee every step, a distance field is worked out around where
+ * the pursuee is, and every chaser in the field follows it downhill. The pursuee can wander a few blocks from the root
+ * of the field before a new field is needed, so one search is shared by all the chasers and reused for many steps. A
+ * field is thrown away when a block inside it changes. Chasers that are close to the pursuee, or too far away for a
+ * field, just step towards it.
+ * <p>
+ * Only used on the simulation thread.
+ */
+class PursuitPlanner implements IMapListener {
+
+    /** How far the pursuee can get from the root of a field before a new one is needed. */
+    private static final int REROOT_DISTANCE = 3;
+
+    /** The smallest distance a field reaches out from its root. */
+    private static final int MIN_RADIUS = 16;
+
+    /** The largest distance a field reaches out from its root. */
+    private static final int MAX_RADIUS = 48;
+
+    /** The most fields that are kept, the least recently used is thrown away first. */
+    private static final int MAX_FIELDS = 16;
+
+    /** The planner used to work out the fields. */
+    private final PathPlanner planner = new PathPlanner();
+
+    /** The fields, in order of when they were last used. */
+    private final List<Pursuit> pursuits = new ArrayList<>();
+
+    /**
+     * Gets the next step for a chaser.
+     * @param position the node the chaser is on
+     * @param target the node the pursuee is on
+     * @return the node to step to, null if the chaser can't move
+     */
+    WalkableNode getNextStep(final WalkableNode position, final WalkableNode target) {
+        if (position.distance(target) > REROOT_DISTANCE) {
+            DistanceField field = getField(position, target);
+            if (field != null) {
+                WalkableNode next = field.getNextNode(position);
+                if (next != null) {
+                    return next;
+                }
+            }
+        }
+        return getClosestAdjacency(position.adjacencies, target);
+    }
+
+    @Override
+    public void mapChanged(final MapIndex mapIndex) {
+        Iterator<Pursuit> iterator = pursuits.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().field.isNear(mapIndex)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Get a field rooted near the pursuee that the chaser is in, working out a new one if there isn't one.
+     * @param position the node the chaser is on
+     * @param target the node the pursuee is on
+     * @return the field, null if the chaser is too far away or can't get to the pursuee without leaving the field
+     */
+    private DistanceField getField(final WalkableNode position, final WalkableNode target) {
+        for (int i = pursuits.size() - 1; i >= 0; i--) {
+            Pursuit pursuit = pursuits.get(i);
+            if (pursuit.root.distance(target) <= REROOT_DISTANCE && pursuit.field.isInArea(position)) {
+                // Move it to the end so it is the last to be thrown away
+                pursuits.remove(i);
+                pursuits.add(pursuit);
+                return pursuit.field.contains(position) ? pursuit.field : null;
+            }
+        }
+
+        int distance = Math.max(Math.abs(position.x - target.x),
+                Math.max(Math.abs(position.y - target.y), Math.abs(position.z - target.z)));
+        if (distance > MAX_RADIUS) {
+            return null;
+        }
+        int radius = Math.min(Math.max(distance * 2, MIN_RADIUS), MAX_RADIUS);
+        MapIndex min = target.add(-radius, -radius, -radius);
+        MapIndex max = target.add(radius, radius, radius);
+        DistanceField field = planner.findDistanceField(Collections.singletonList(target), min, max);
+        pursuits.add(new Pursuit(target, field));
+        if (pursuits.size() > MAX_FIELDS) {
+            pursuits.remove(0);
+        }
+        return field.contains(position) ? field : null;
+    }
+
+    /**
+     * Gets the neighbour of the chaser that is closest to the pursuee.
+     * @param adjacencies the neighbours of the chaser
+     * @param target the position of the pursuee
+     * @return the closest neighbour, null if the chaser has no neighbours
+     */
+    static WalkableNode getClosestAdjacency(final List<WalkableNode> adjacencies, final MapIndex target) {
+        WalkableNode bestNode = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (WalkableNode node : adjacencies) {
+            int distance = node != null ? node.distance(target) : Integer.MAX_VALUE;
+            if (distance < bestDistance) {
+                bestNode = node;
+                bestDistance = distance;
+            }
+        }
+        return bestNode;
+    }
+
+    /**
+     * A field rooted where a pursuee was.
+     */
+    private static class Pursuit {
+
+        /** The node the pursuee was on when the field was worked out. */
+        private final WalkableNode root;
+
+        /** The field. */
+        private final DistanceField field;
+
+        /**
+         * Constructor.
+         * @param rootTmp the node the pursuee was on
+         * @param fieldTmp the field
+         */
+        Pursuit(final WalkableNode rootTmp, final DistanceField fieldTmp) {
+            root = rootTmp;
+            field = fieldTmp;
+        }
+    }
+}
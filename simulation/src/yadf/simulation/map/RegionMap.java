@@ -28,6 +28,9 @@ package yadf.simulation.map;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -41,11 +44,23 @@ import yadf.misc.Noise;
  */
 public class RegionMap {
 
+    /** Maps with at least this many columns have their walkable nodes setup in parallel. */
+    private static final int PARALLEL_SETUP_MIN_COLUMNS = 256 * 256;
+
     /** The block types. */
-    private BlockType[][][] blockTypes;
+    private ChunkedBlockStore blockTypes;
+
+    /** The walkable nodes in each column of the map, indexed by x * map size y + y, null if a column has none. */
+    private WalkableNode[][] walkableColumns;
+
+    /** The id to give the next walkable node if there are no free ids. */
+    private int nextNodeId;
+
+    /** Ids of removed walkable nodes that can be given to new nodes, keeps the path planner arrays small. */
+    private int[] freeNodeIds = new int[0];
 
-    /** The walkable nodes. */
-    private List<WalkableNode> walkableNodes;
+    /** The number of free ids. */
+    private int freeNodeIdCount;
 
     /** The map size. */
     private MapIndex mapSize;
@@ -53,6 +68,27 @@ public class RegionMap {
     /** The path planner. */
     private final PathPlanner pathPlanner = new PathPlanner();
 
+    /** The graph used to plan long paths. */
+    private ChunkGraph chunkGraph;
+
+    /** Which walkable nodes can be reached from each other. */
+    private ConnectedComponents connectedComponents;
+
+    /** Distance fields for the destinations that are asked for the most. */
+    private FlowFieldCache flowFieldCache;
+
+    /** Paths that have been found recently. */
+    private PathCache pathCache;
+
+    /** Plans the steps of characters chasing other characters. */
+    private PursuitPlanner pursuitPlanner;
+
+    /** Runs the tasks of all the maps, such as path searches and setting up large maps. */
+    private static ITaskRunner taskRunner = new SameThreadTaskRunner();
+
+    /** Finds paths on worker threads. */
+    private final PathService pathService = new PathService(this);
+
     /** The listeners. */
     private final List<IMapListener> listeners = new CopyOnWriteArrayList<>();
 
@@ -65,18 +101,18 @@ public class RegionMap {
         Random random = MyRandom.getInstance();
         Noise.init();
 
-        blockTypes = new BlockType[mapSize.x][mapSize.y][mapSize.z];
+        blockTypes = new ChunkedBlockStore(mapSize, BlockType.EMPTY);
+        BlockType[] types = BlockType.values();
 
+        // Everything starts off empty, so only the ground and the grass on top of it need to be set
         for (int x = 0; x < mapSize.x; x++) {
             for (int y = 0; y < mapSize.y; y++) {
-                for (int z = 0; z < mapSize.z; z++) {
-                    int height = (int) ((Noise.noise((double) x / 100, (double) y / 100) + 8) / 10 * mapSize.z);
+                int height = (int) ((Noise.noise((double) x / 100, (double) y / 100) + 8) / 10 * mapSize.z);
+                for (int z = 0; z < mapSize.z && z <= height; z++) {
                     if (z < height) {
-                        blockTypes[x][y][z] = BlockType.values()[random.nextInt(5) + 2];
-                    } else if (z == height) {
-                        blockTypes[x][y][z] = BlockType.GRASS;
+                        blockTypes.setBlock(x, y, z, types[random.nextInt(5) + 2]);
                     } else {
-                        blockTypes[x][y][z] = BlockType.EMPTY;
+                        blockTypes.setBlock(x, y, z, BlockType.GRASS);
                     }
                 }
             }
@@ -84,50 +120,147 @@ public class RegionMap {
 
         addRamps();
 
+        int collapsed = blockTypes.compact();
+        Logger.getInstance().log(this, collapsed + " of " + blockTypes.getChunkCount() + " chunks collapsed");
+
         setupWalkableNodes();
+        chunkGraph = new ChunkGraph(this);
+        connectedComponents = new ConnectedComponents(this);
+        flowFieldCache = new FlowFieldCache(this);
+        addListener(flowFieldCache);
+        pathCache = new PathCache(mapSize);
+        addListener(pathCache);
+        pursuitPlanner = new PursuitPlanner();
+        addListener(pursuitPlanner);
     }
 
     /**
      * Setup walkable nodes.
      */
     private void setupWalkableNodes() {
-        walkableNodes = new ArrayList<>();
+        walkableColumns = new WalkableNode[mapSize.x * mapSize.y][];
+        nextNodeId = 0;
+        freeNodeIdCount = 0;
 
         // Create the walkable nodes
         for (int x = 0; x < mapSize.x; x++) {
             for (int y = 0; y < mapSize.y; y++) {
                 int z = getHeight(x, y);
-                walkableNodes.add(new WalkableNode(new MapIndex(x, y, z)));
+                addWalkableNode(new MapIndex(x, y, z));
 
                 // If the block can be stood on, add a node above it (this is
                 // for the ramps on hills)
                 if (getBlock(x, y, z).isStandOn) {
-                    walkableNodes.add(new WalkableNode(new MapIndex(x, y, z + 1)));
+                    addWalkableNode(new MapIndex(x, y, z + 1));
                 }
             }
         }
 
-        // Setup the adjacencies (Very brute force, but its only during loading)
-        for (int i = 0; i < walkableNodes.size(); i++) {
-            for (int j = i + 1; j < walkableNodes.size(); j++) {
-                WalkableNode nodeI = walkableNodes.get(i);
-                WalkableNode nodeJ = walkableNodes.get(j);
-
-                MapIndex diff = nodeI.sub(nodeJ);
-                if (Math.abs(diff.x) <= 1 && Math.abs(diff.y) <= 1) {
-                    if (diff.z == 0 || // Its on the same level
-                            (diff.z == 1 && getBlock(nodeJ).isClimb) || // Its
-                                                                        // below
-                            (diff.z == -1 && getBlock(nodeI).isClimb)) { // Its
-                                                                         // above
-                        nodeI.adjacencies.add(nodeJ);
-                        nodeJ.adjacencies.add(nodeI);
+        // Setup the adjacencies, each node only needs to look at the columns around it and only changes its own
+        // adjacencies, so large maps can be split into stripes and done in parallel
+        ITaskRunner runner = taskRunner;
+        if (runner.getThreadCount() > 1 && mapSize.x * mapSize.y >= PARALLEL_SETUP_MIN_COLUMNS) {
+            setupAdjacenciesInParallel(runner);
+        } else {
+            setupAdjacencies(0, mapSize.x);
+        }
+    }
+
+    /**
+     * Setup the adjacencies of the walkable nodes, splitting the map into a stripe for each thread.
+     * @param runner the task runner to run the stripes on
+     */
+    private void setupAdjacenciesInParallel(final ITaskRunner runner) {
+        List<IStartedTask> stripes = new ArrayList<>();
+        int threadCount = runner.getThreadCount();
+        int stripeWidth = (mapSize.x + threadCount - 1) / threadCount;
+        for (int startX = 0; startX < mapSize.x; startX += stripeWidth) {
+            final int stripeStartX = startX;
+            final int stripeEndX = Math.min(startX + stripeWidth, mapSize.x);
+            stripes.add(runner.start(new Runnable() {
+                @Override
+                public void run() {
+                    setupAdjacencies(stripeStartX, stripeEndX);
+                }
+            }));
+        }
+        for (IStartedTask stripe : stripes) {
+            stripe.waitUntilDone();
+        }
+    }
+
+    /**
+     * Setup the adjacencies of the walkable nodes in a stripe of the map.
+     * @param startX the first x position of the stripe
+     * @param endX the x position after the end of the stripe
+     */
+    private void setupAdjacencies(final int startX, final int endX) {
+        for (int x = startX; x < endX; x++) {
+            for (int y = 0; y < mapSize.y; y++) {
+                WalkableNode[] column = walkableColumns[x * mapSize.y + y];
+                if (column == null) {
+                    continue;
+                }
+                for (WalkableNode node : column) {
+                    connectWalkableNode(node, false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add all the walkable nodes surrounding a node to its adjacencies.
+     * @param node the node to connect
+     * @param updateNeighbours if true the node is also added to the adjacencies of its neighbours
+     */
+    private void connectWalkableNode(final WalkableNode node, final boolean updateNeighbours) {
+        // Go through the surrounding columns in the same order as the nodes were created
+        for (int x = Math.max(node.x - 1, 0); x <= Math.min(node.x + 1, mapSize.x - 1); x++) {
+            for (int y = Math.max(node.y - 1, 0); y <= Math.min(node.y + 1, mapSize.y - 1); y++) {
+                WalkableNode[] column = walkableColumns[x * mapSize.y + y];
+                if (column == null) {
+                    continue;
+                }
+                for (WalkableNode adjNode : column) {
+                    if (adjNode != node && isAdjacent(node, adjNode)) {
+                        node.adjacencies.add(adjNode);
+                        if (updateNeighbours) {
+                            adjNode.adjacencies.add(node);
+                        }
                     }
                 }
             }
         }
     }
 
+    /**
+     * Remove a walkable node from the adjacencies of all its neighbours.
+     * @param node the node to disconnect
+     */
+    private static void disconnectWalkableNode(final WalkableNode node) {
+        for (WalkableNode adjNode : node.adjacencies) {
+            adjNode.adjacencies.remove(node);
+        }
+    }
+
+    /**
+     * Checks if two walkable nodes are next to each other and a character can walk (or climb) between them.
+     * @param node the first node
+     * @param otherNode the second node
+     * @return true, if they are adjacent
+     */
+    private boolean isAdjacent(final MapIndex node, final MapIndex otherNode) {
+        int diffX = node.x - otherNode.x;
+        int diffY = node.y - otherNode.y;
+        int diffZ = node.z - otherNode.z;
+        if (Math.abs(diffX) > 1 || Math.abs(diffY) > 1) {
+            return false;
+        }
+        return diffZ == 0 // Its on the same level
+                || (diffZ == 1 && getBlock(otherNode).isClimb) // Its below
+                || (diffZ == -1 && getBlock(node).isClimb); // Its above
+    }
+
     /**
      * Add a listener to the map.
      * @param listener the listener to add
@@ -183,6 +316,137 @@ public class RegionMap {
      * @return the list
      */
     public List<MapIndex> findPath(final MapIndex position, final MapIndex target) {
+        prepareForSynchronousSearch();
+        return findPath(pathPlanner, position, target);
+    }
+
+    /**
+     * Find path with a plain search of the walkable nodes, choosing whether to use jump point search, this does not
+     * use the chunk graph or any of the caches so it is useful for comparing the two searches.
+     * @param position the position
+     * @param target the target
+     * @param jumpPointSearch true to use jump point search
+     * @return the list
+     */
+    public List<MapIndex> findPath(final MapIndex position, final MapIndex target, final boolean jumpPointSearch) {
+        WalkableNode positionNode = getWalkableNode(position);
+        WalkableNode targetNode = getWalkableNode(target);
+        if (positionNode == null || targetNode == null) {
+            return null;
+        }
+        return pathPlanner.findPath(positionNode, Collections.singletonList(targetNode), jumpPointSearch);
+    }
+
+    /**
+     * Find a path to whichever of several targets is closest, with one search rather than one for each target.
+     * @param position the position
+     * @param targets the targets
+     * @return the path, null if none of the targets can be reached
+     */
+    public List<MapIndex> findPath(final MapIndex position, final Collection<? extends MapIndex> targets) {
+        pathService.finishRequests();
+        flowFieldCache.requested(targets);
+        List<MapIndex> path = pathCache.get(position, targets);
+        if (path == null) {
+            prepareForSearches();
+            path = findPath(pathPlanner, position, targets);
+            if (path != null) {
+                pathCache.put(position, targets, path);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Find a short path to whichever of several nearby targets is closest, without going further than a distance from
+     * the position in any direction. This is much quicker than a full search, so it is used to get around something
+     * that has blocked a path.
+     * @param position the position
+     * @param targets the targets
+     * @param radius how far the path can go from the position
+     * @return the path, null if none of the targets can be reached within the distance
+     */
+    public List<MapIndex> findLocalPath(final MapIndex position, final Collection<? extends MapIndex> targets,
+            final int radius) {
+        WalkableNode positionNode = getWalkableNode(position);
+        if (positionNode == null) {
+            return null;
+        }
+        MapIndex min = position.add(-radius, -radius, -radius);
+        MapIndex max = position.add(radius, radius, radius);
+        return pathPlanner.findPath(positionNode, targets, min, max);
+    }
+
+    /**
+     * Gets the next step for a character chasing another character, the steps are planned for all the characters
+     * chasing the same character at once and only planned again after the chased character has moved a few blocks.
+     * @param position the position of the chaser
+     * @param target the position of the character being chased
+     * @return the position to step to, null if the chaser can't move
+     */
+    public MapIndex getPursuitStep(final MapIndex position, final MapIndex target) {
+        WalkableNode positionNode = getWalkableNode(position);
+        // The chaser has fallen or been moved off the walkable nodes, step out towards the target
+        if (positionNode == null) {
+            return PursuitPlanner.getClosestAdjacency(getAdjacencies(position), target);
+        }
+        WalkableNode targetNode = getWalkableNode(target);
+        if (targetNode != null) {
+            pathService.finishRequests();
+            connectedComponents.update();
+            if (connectedComponents.isConnected(positionNode, targetNode)) {
+                return pursuitPlanner.getNextStep(positionNode, targetNode);
+            }
+        }
+        // There is no path to plan, just head towards the target
+        return PursuitPlanner.getClosestAdjacency(positionNode.adjacencies, target);
+    }
+
+    /**
+     * Bring the data used by searches up to date before searching on the simulation thread. The path service's worker
+     * threads can still be reading that data between simulation steps, so their searches are finished first.
+     */
+    private void prepareForSynchronousSearch() {
+        pathService.finishRequests();
+        prepareForSearches();
+    }
+
+    /**
+     * Bring the data used by searches up to date with the map, must be called on the simulation thread before searching
+     * the map.
+     */
+    void prepareForSearches() {
+        connectedComponents.update();
+        chunkGraph.update();
+        flowFieldCache.update();
+    }
+
+    /**
+     * Checks if there is any path between two walkable positions, this is much quicker than finding the path.
+     * @param position the position
+     * @param target the target
+     * @return true, if both positions are walkable and the target can be reached from the position
+     */
+    public boolean isReachable(final MapIndex position, final MapIndex target) {
+        WalkableNode positionNode = getWalkableNode(position);
+        WalkableNode targetNode = getWalkableNode(target);
+        if (positionNode == null || targetNode == null) {
+            return false;
+        }
+        pathService.finishRequests();
+        connectedComponents.update();
+        return connectedComponents.isConnected(positionNode, targetNode);
+    }
+
+    /**
+     * Find path using a particular planner. Long paths are planned across chunks and only the first part of them is
+     * found, so the path may end before the target, in which case a new path should be found from there.
+     * @param planner the planner to use
+     * @param position the position
+     * @param target the target
+     * @return the list
+     */
+    List<MapIndex> findPath(final PathPlanner planner, final MapIndex position, final MapIndex target) {
         WalkableNode positionNode = getWalkableNode(position);
         WalkableNode targetNode = getWalkableNode(target);
 
@@ -196,7 +460,84 @@ public class RegionMap {
             return null;
         }
 
-        return pathPlanner.findPath(positionNode, targetNode);
+        if (!connectedComponents.isConnected(positionNode, targetNode)) {
+            return null;
+        }
+
+        if (chunkGraph.isLongPath(positionNode, targetNode)) {
+            return chunkGraph.findPath(planner, positionNode, targetNode);
+        }
+
+        return planner.findPath(positionNode, targetNode);
+    }
+
+    /**
+     * Find a path to whichever of several targets is closest using a particular planner. Like a path to a single
+     * target, a long path may end before the target.
+     * @param planner the planner to use
+     * @param position the position
+     * @param targets the targets
+     * @return the path, null if none of the targets can be reached
+     */
+    List<MapIndex> findPath(final PathPlanner planner, final MapIndex position,
+            final Collection<? extends MapIndex> targets) {
+        if (!beginPath(planner, position, targets)) {
+            planner.continuePath(Integer.MAX_VALUE);
+        }
+        return planner.getPath();
+    }
+
+    /**
+     * Begin finding a path to whichever of several targets is closest using a particular planner. Paths that can be
+     * found quickly are found straight away, otherwise a search is begun that must be carried on with
+     * {@link PathPlanner#continuePath(int)}, the path can then be got from the planner.
+     * @param planner the planner to use
+     * @param position the position
+     * @param targets the targets
+     * @return true, if the path has already been found
+     */
+    boolean beginPath(final PathPlanner planner, final MapIndex position,
+            final Collection<? extends MapIndex> targets) {
+        WalkableNode positionNode = getWalkableNode(position);
+        if (positionNode == null) {
+            Logger.getInstance().log(this, "Position node does not exist in walkable nodes");
+            planner.finishPath(null);
+            return true;
+        }
+
+        // Popular targets have a distance field that can be followed without a search
+        List<MapIndex> path = flowFieldCache.findPath(positionNode, targets);
+        if (path != null) {
+            planner.finishPath(path);
+            return true;
+        }
+
+        // Only search for the targets that can be reached
+        List<WalkableNode> targetNodes = new ArrayList<>();
+        WalkableNode nearestNode = null;
+        for (MapIndex target : targets) {
+            WalkableNode targetNode = target != null ? getWalkableNode(target) : null;
+            if (targetNode != null && connectedComponents.isConnected(positionNode, targetNode)) {
+                targetNodes.add(targetNode);
+                if (nearestNode == null || position.distance(targetNode) < position.distance(nearestNode)) {
+                    nearestNode = targetNode;
+                }
+            }
+        }
+
+        if (nearestNode == null) {
+            planner.finishPath(null);
+            return true;
+        }
+
+        // The targets are normally close together, so a long path only needs to head for the nearest one
+        if (chunkGraph.isLongPath(positionNode, nearestNode)) {
+            planner.finishPath(chunkGraph.findPath(planner, positionNode, nearestNode));
+            return true;
+        }
+
+        planner.beginPath(positionNode, targetNodes, null, null, false);
+        return false;
     }
 
     /**
@@ -213,7 +554,7 @@ public class RegionMap {
         List<WalkableNode> adjacencies = new ArrayList<>();
         BlockType adjType;
         BlockType adjBelowType;
-        BlockType type = blockTypes[position.x][position.y][position.z];
+        BlockType type = getBlock(position);
         MapIndex adjPosition;
 
         // Because iterating over all the walkable nodes is expensive, first
@@ -222,8 +563,8 @@ public class RegionMap {
             for (int y = position.y - 1; y <= position.y + 1; y++) {
                 // Add the adjacencies on the same level
                 if (x != position.x || y != position.y) {
-                    adjType = blockTypes[x][y][position.z];
-                    adjBelowType = blockTypes[x][y][position.z - 1];
+                    adjType = getBlock(x, y, position.z);
+                    adjBelowType = getBlock(x, y, position.z - 1);
                     if (adjType.isStandIn && adjBelowType.isStandOn) {
                         adjPosition = new MapIndex(x, y, position.z);
                         adjacencies.add(getWalkableNode(adjPosition));
@@ -231,14 +572,14 @@ public class RegionMap {
                 }
 
                 // Add the adjacency below
-                adjType = blockTypes[x][y][position.z - 1];
+                adjType = getBlock(x, y, position.z - 1);
                 if (adjType.isClimb) {
                     adjPosition = new MapIndex(x, y, position.z - 1);
                     adjacencies.add(getWalkableNode(adjPosition));
                 }
 
                 // Add the adjacency above
-                adjType = blockTypes[x][y][position.z + 1];
+                adjType = getBlock(x, y, position.z + 1);
                 if (adjType.isStandIn && type.isClimb) {
                     adjPosition = new MapIndex(x, y, position.z + 1);
                     adjacencies.add(getWalkableNode(adjPosition));
@@ -258,7 +599,7 @@ public class RegionMap {
      */
     public BlockType getBlock(final int x, final int y, final int z) {
         if (x >= 0 && x < mapSize.x && y >= 0 && y < mapSize.y && z >= 0 && z < mapSize.z) {
-            return blockTypes[x][y][z];
+            return blockTypes.getBlock(x, y, z);
         }
 
         return BlockType.EMPTY;
@@ -297,6 +638,46 @@ public class RegionMap {
         return mapSize;
     }
 
+    /**
+     * Gets the task runner shared by all the maps.
+     * @return the task runner
+     */
+    public static ITaskRunner getTaskRunner() {
+        return taskRunner;
+    }
+
+    /**
+     * Sets the task runner shared by all the maps, should be picked when the game is setup before any map is made.
+     * @param taskRunnerTmp the task runner, a {@link SameThreadTaskRunner} where threads are not available
+     */
+    public static void setTaskRunner(final ITaskRunner taskRunnerTmp) {
+        taskRunner = taskRunnerTmp;
+    }
+
+    /**
+     * Gets the path service.
+     * @return the path service
+     */
+    public PathService getPathService() {
+        return pathService;
+    }
+
+    /**
+     * Gets the cache of distance fields for popular destinations.
+     * @return the flow field cache
+     */
+    FlowFieldCache getFlowFieldCache() {
+        return flowFieldCache;
+    }
+
+    /**
+     * Gets the cache of recently found paths.
+     * @return the path cache
+     */
+    PathCache getPathCache() {
+        return pathCache;
+    }
+
     /**
      * Gets the neighbour types.
      * @param b the b
@@ -331,29 +712,59 @@ public class RegionMap {
         neighbours[i++] = new MapIndex(b.x, b.y + 1, b.z);
     }
 
-    // TODO: implement quad tree
     /**
      * Gets the walkable node.
      * @param position the position
      * @return the walkable node
      */
     public WalkableNode getWalkableNode(final MapIndex position) {
-        for (WalkableNode node : walkableNodes) {
-            if (node.equals(position)) {
-                return node;
+        if (position.x < 0 || position.x >= mapSize.x || position.y < 0 || position.y >= mapSize.y) {
+            return null;
+        }
+
+        WalkableNode[] column = walkableColumns[position.x * mapSize.y + position.y];
+        if (column != null) {
+            for (WalkableNode node : column) {
+                if (node.z == position.z) {
+                    return node;
+                }
             }
         }
 
         return null;
     }
 
+    /**
+     * Gets all the walkable nodes within a box.
+     * @param min the lowest corner of the box
+     * @param max the highest corner of the box
+     * @return the walkable nodes
+     */
+    List<WalkableNode> getWalkableNodes(final MapIndex min, final MapIndex max) {
+        List<WalkableNode> nodes = new ArrayList<>();
+        for (int x = Math.max(min.x, 0); x <= Math.min(max.x, mapSize.x - 1); x++) {
+            for (int y = Math.max(min.y, 0); y <= Math.min(max.y, mapSize.y - 1); y++) {
+                WalkableNode[] column = walkableColumns[x * mapSize.y + y];
+                if (column == null) {
+                    continue;
+                }
+                for (WalkableNode node : column) {
+                    if (node.z >= min.z && node.z <= max.z) {
+                        nodes.add(node);
+                    }
+                }
+            }
+        }
+        return nodes;
+    }
+
     /**
      * Checks if is walkable.
      * @param mapIndex the map index
      * @return true, if is walkable
      */
     public boolean isWalkable(final MapIndex mapIndex) {
-        return walkableNodes.contains(mapIndex);
+        return getWalkableNode(mapIndex) != null;
     }
 
     /**
@@ -371,20 +782,22 @@ public class RegionMap {
      * @param type the type
      */
     public void setBlock(final MapIndex index, final BlockType type) {
-        BlockType oldType = blockTypes[index.x][index.y][index.z];
-        BlockType belowType = blockTypes[index.x][index.y][index.z - 1];
-        BlockType aboveType = blockTypes[index.x][index.y][index.z + 1];
+        // Searches on the worker threads must not see the map changing
+        pathService.finishRequests();
+
+        BlockType oldType = getBlock(index);
+        BlockType belowType = getBlock(index.x, index.y, index.z - 1);
+        BlockType aboveType = getBlock(index.x, index.y, index.z + 1);
 
-        blockTypes[index.x][index.y][index.z] = type;
+        blockTypes.setBlock(index.x, index.y, index.z, type);
 
         // Remove old walkable node
         if (belowType.isStandOn && oldType.isStandIn && !type.isStandIn) {
             WalkableNode node = getWalkableNode(index);
             if (node != null) {
-                for (WalkableNode node2 : walkableNodes) {
-                    node2.adjacencies.remove(node);
-                }
-                walkableNodes.remove(node);
+                disconnectWalkableNode(node);
+                removeWalkableNode(node);
+                connectedComponents.nodeRemoved(node);
             }
         }
 
@@ -392,54 +805,98 @@ public class RegionMap {
         if (!type.isStandOn && oldType.isStandOn && aboveType.isStandIn) {
             WalkableNode node = getWalkableNode(index.add(0, 0, 1));
             if (node != null) {
-                for (WalkableNode node2 : walkableNodes) {
-                    node2.adjacencies.remove(node);
-                }
-                walkableNodes.remove(node);
+                disconnectWalkableNode(node);
+                removeWalkableNode(node);
+                connectedComponents.nodeRemoved(node);
+            }
+        }
+
+        // Reconnect a node that is still there but has become climbable or stopped being climbable
+        if (belowType.isStandOn && oldType.isStandIn && type.isStandIn && oldType.isClimb != type.isClimb) {
+            WalkableNode node = getWalkableNode(index);
+            if (node != null) {
+                disconnectWalkableNode(node);
+                connectedComponents.nodeRemoved(node);
+                node.adjacencies.clear();
+                connectWalkableNode(node, true);
+                connectedComponents.nodeAdded(node);
             }
         }
 
         // Create a new walkable node
         if (belowType.isStandOn && !oldType.isStandIn && type.isStandIn) {
-            WalkableNode newNode = new WalkableNode(index);
-            for (WalkableNode node : walkableNodes) {
-                MapIndex diff = newNode.sub(node);
-                if (Math.abs(diff.x) <= 1 && Math.abs(diff.y) <= 1) {
-                    if (diff.z == 0 || // Its on the same level
-                            (diff.z == 1 && getBlock(node).isClimb) || // Its
-                                                                       // below
-                            (diff.z == -1 && getBlock(newNode).isClimb)) { // Its
-                                                                           // above
-                        newNode.adjacencies.add(node);
-                        node.adjacencies.add(newNode);
-                    }
-                }
-            }
-            walkableNodes.add(newNode);
+            WalkableNode newNode = addWalkableNode(index);
+            connectWalkableNode(newNode, true);
+            connectedComponents.nodeAdded(newNode);
         }
 
         // Create a new above walkable node
         if (!oldType.isStandOn && type.isStandOn && aboveType.isStandIn) {
-            WalkableNode newNode = new WalkableNode(index.add(0, 0, 1));
-            for (WalkableNode node : walkableNodes) {
-                MapIndex diff = newNode.sub(node);
-                if (Math.abs(diff.x) <= 1 && Math.abs(diff.y) <= 1) {
-                    if (diff.z == 0 || // Its on the same level
-                            (diff.z == 1 && getBlock(node).isClimb) || // Its
-                                                                       // below
-                            (diff.z == -1 && getBlock(newNode).isClimb)) { // Its
-                                                                           // above
-                        newNode.adjacencies.add(node);
-                        node.adjacencies.add(newNode);
-                    }
-                }
-            }
-            walkableNodes.add(newNode);
+            WalkableNode newNode = addWalkableNode(index.add(0, 0, 1));
+            connectWalkableNode(newNode, true);
+            connectedComponents.nodeAdded(newNode);
         }
 
+        chunkGraph.markDirty(index);
+        chunkGraph.markDirty(index.add(0, 0, 1));
+        pathService.restartRequests();
+
         notifyListeners(index);
     }
 
+    /**
+     * Create a walkable node and add it to the index of its column.
+     * @param position the position of the node
+     * @return the new node
+     */
+    private WalkableNode addWalkableNode(final MapIndex position) {
+        int id;
+        if (freeNodeIdCount > 0) {
+            freeNodeIdCount--;
+            id = freeNodeIds[freeNodeIdCount];
+        } else {
+            id = nextNodeId++;
+        }
+        WalkableNode node = new WalkableNode(position, id);
+
+        int columnIndex = node.x * mapSize.y + node.y;
+        WalkableNode[] column = walkableColumns[columnIndex];
+        if (column == null) {
+            walkableColumns[columnIndex] = new WalkableNode[] {node};
+        } else {
+            WalkableNode[] newColumn = Arrays.copyOf(column, column.length + 1);
+            newColumn[column.length] = node;
+            walkableColumns[columnIndex] = newColumn;
+        }
+        return node;
+    }
+
+    /**
+     * Remove a walkable node from the index of its column.
+     * @param node the node to remove
+     */
+    private void removeWalkableNode(final WalkableNode node) {
+        int columnIndex = node.x * mapSize.y + node.y;
+        WalkableNode[] column = walkableColumns[columnIndex];
+        for (int i = 0; i < column.length; i++) {
+            if (column[i] == node) {
+                if (column.length == 1) {
+                    walkableColumns[columnIndex] = null;
+                } else {
+                    WalkableNode[] newColumn = new WalkableNode[column.length - 1];
+                    System.arraycopy(column, 0, newColumn, 0, i);
+                    System.arraycopy(column, i + 1, newColumn, i, column.length - i - 1);
+                    walkableColumns[columnIndex] = newColumn;
+                }
+                if (freeNodeIdCount == freeNodeIds.length) {
+                    freeNodeIds = Arrays.copyOf(freeNodeIds, Math.max(freeNodeIdCount * 2, 16));
+                }
+                freeNodeIds[freeNodeIdCount++] = node.id;
+                return;
+            }
+        }
+    }
+
     /**
      * Adds ramps to the map, scans across the surface, finds the edges of hills and sets them as RAMP.
      */
@@ -458,7 +915,7 @@ public class RegionMap {
                 int h8 = getHeight(x + 1, y + 1);
 
                 if (h1 > h || h2 > h || h3 > h || h4 > h || h5 > h || h6 > h || h7 > h || h8 > h) {
-                    blockTypes[x][y][h] = BlockType.RAMP;
+                    blockTypes.setBlock(x, y, h, BlockType.RAMP);
                 }
             }
         }
@@ -37,7 +37,7 @@ import java.util.List;
 /**
  * The Class WalkableNode.
  */
-public class WalkableNode extends MapIndex implements Comparable<WalkableNode> {
+public class WalkableNode extends MapIndex {
 
     /** The serial version UID. */
     private static final long serialVersionUID = -2149106280540899825L;
@@ -45,35 +45,17 @@ public class WalkableNode extends MapIndex implements Comparable<WalkableNode> {
     /** The adjacencies. */
     public List<WalkableNode> adjacencies = new ArrayList<>();
 
-    /** The g. */
-    public int g;
-
-    /** The h. */
-    public int h;
-
-    /** The f. */
-    public int f;
-
-    /** The parent. */
-    public WalkableNode parent = null;
+    /** The id of the node, unique amongst the nodes currently on the map, used to index the path planner arrays. */
+    final int id;
 
     /**
      * Instantiates a new walkable node.
      * @param mapIndex the map index
+     * @param idTmp the id of the node
      */
-    public WalkableNode(final MapIndex mapIndex) {
+    WalkableNode(final MapIndex mapIndex, final int idTmp) {
         super(mapIndex);
-    }
-
-    @Override
-    public int compareTo(final WalkableNode o) {
-        if (f < o.f) {
-            return -1;
-        } else if (f > o.f) {
-            return 1;
-        } else {
-            return 0;
-        }
+        id = idTmp;
     }
 
     @Override
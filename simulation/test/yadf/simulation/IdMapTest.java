@@ -0,0 +1,146 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link IdMap}.
+ */
+public class IdMapTest {
+
+    /**
+     * Objects can be got back by id, and replacing an object keeps the size.
+     */
+    @Test
+    public void testPutAndGet() {
+        IdMap<String> map = new IdMap<>();
+        map.put(1, "one");
+        map.put(-1, "minus one");
+        map.put(0, "zero");
+        assertEquals("one", map.get(1));
+        assertEquals("minus one", map.get(-1));
+        assertEquals("zero", map.get(0));
+        assertNull(map.get(2));
+        map.put(1, "uno");
+        assertEquals("uno", map.get(1));
+        assertEquals(3, map.size());
+    }
+
+    /**
+     * Everything put in before the map grows can still be found after it grows.
+     */
+    @Test
+    public void testResize() {
+        IdMap<Integer> map = new IdMap<>();
+        for (int id = 0; id < 1000; id++) {
+            map.put(-id, id);
+        }
+        assertEquals(1000, map.size());
+        for (int id = 0; id < 1000; id++) {
+            assertEquals(Integer.valueOf(id), map.get(-id));
+        }
+    }
+
+    /**
+     * Removing objects from the middle of a run of used slots, including runs that wrap around the end of the slots,
+     * doesn't lose the objects after them.
+     */
+    @Test
+    public void testRemoveAcrossWraparound() {
+        // Few enough ids that the map stays small, so the runs often wrap around the end of the slots
+        Random random = new Random(1);
+        IdMap<Integer> map = new IdMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            int id = random.nextInt(12) - 6;
+            if (random.nextBoolean()) {
+                map.put(id, i);
+                expected.put(id, i);
+            } else {
+                map.remove(id);
+                expected.remove(id);
+            }
+            assertEquals(expected.size(), map.size());
+            for (int otherId = -6; otherId < 6; otherId++) {
+                assertEquals(expected.get(otherId), map.get(otherId));
+            }
+        }
+    }
+
+    /**
+     * Lots of puts and removes, with the map growing, give the same result as a hash map.
+     */
+    @Test
+    public void testMatchesHashMap() {
+        Random random = new Random(2);
+        IdMap<Integer> map = new IdMap<>();
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            int id = -random.nextInt(2000);
+            if (random.nextInt(3) != 0) {
+                map.put(id, i);
+                expected.put(id, i);
+            } else {
+                map.remove(id);
+                expected.remove(id);
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (int id = -2000; id <= 0; id++) {
+            assertEquals(expected.get(id), map.get(id));
+        }
+    }
+
+    /**
+     * Clearing the map removes everything but it can still be used.
+     */
+    @Test
+    public void testClear() {
+        IdMap<String> map = new IdMap<>();
+        map.put(5, "five");
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(5));
+        String value = "five again";
+        map.put(5, value);
+        assertSame(value, map.get(5));
+    }
+}
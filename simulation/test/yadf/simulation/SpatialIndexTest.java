@@ -0,0 +1,177 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import yadf.simulation.map.MapArea;
+import yadf.simulation.map.MapIndex;
+
+/**
+ * Tests for {@link SpatialIndex}, the queries are checked against looking at every entity.
+ */
+public class SpatialIndexTest {
+
+    /** How far along each side the entities are spread. */
+    private static final int SIZE = 100;
+
+    /** How many levels the entities are spread over. */
+    private static final int LEVELS = 8;
+
+    /**
+     * An entity that only has a position.
+     */
+    private static class TestEntity extends AbstractEntity {
+
+        /** The serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor.
+         * @param position the position
+         * @param width the width
+         * @param height the height
+         */
+        TestEntity(final MapIndex position, final int width, final int height) {
+            super(position, width, height);
+        }
+    }
+
+    /**
+     * An entity can be found by any position it covers, and not after it is removed.
+     */
+    @Test
+    public void testGetEntity() {
+        SpatialIndex<TestEntity> index = new SpatialIndex<>();
+        TestEntity entity = new TestEntity(new MapIndex(6, 6, 2), 4, 3);
+        index.add(entity);
+        assertSame(entity, index.getEntity(new MapIndex(6, 6, 2)));
+        assertSame(entity, index.getEntity(new MapIndex(9, 8, 2)));
+        assertNull(index.getEntity(new MapIndex(10, 8, 2)));
+        assertNull(index.getEntity(new MapIndex(6, 6, 3)));
+        assertEquals(1, index.size());
+        index.remove(entity);
+        assertNull(index.getEntity(new MapIndex(6, 6, 2)));
+        assertEquals(0, index.size());
+        assertNull(index.getNearestEntity(new MapIndex(6, 6, 2)));
+    }
+
+    /**
+     * Area, radius and nearest queries find the same entities as looking at every entity, before and after the
+     * entities move.
+     */
+    @Test
+    public void testQueriesMatchBruteForce() {
+        Random random = new Random(1);
+        SpatialIndex<TestEntity> index = new SpatialIndex<>();
+        List<TestEntity> entities = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            TestEntity entity = new TestEntity(randomPosition(random), 1 + random.nextInt(3), 1 + random.nextInt(3));
+            entities.add(entity);
+            index.add(entity);
+        }
+        checkQueries(random, index, entities);
+
+        for (TestEntity entity : entities) {
+            entity.setPosition(randomPosition(random));
+            index.move(entity);
+        }
+        checkQueries(random, index, entities);
+
+        for (TestEntity entity : new ArrayList<>(entities.subList(0, 150))) {
+            index.remove(entity);
+            entities.remove(entity);
+        }
+        assertEquals(entities.size(), index.size());
+        checkQueries(random, index, entities);
+    }
+
+    /**
+     * Check random queries against looking at every entity.
+     * @param random the random number generator
+     * @param index the index
+     * @param entities all the entities in the index
+     */
+    private static void checkQueries(final Random random, final SpatialIndex<TestEntity> index,
+            final List<TestEntity> entities) {
+        for (int i = 0; i < 200; i++) {
+            MapIndex position = randomPosition(random);
+
+            MapArea area = new MapArea(position, 1 + random.nextInt(20), 1 + random.nextInt(20));
+            List<TestEntity> expected = new ArrayList<>();
+            for (TestEntity entity : entities) {
+                if (entity.getArea().operlapsArea(area)) {
+                    expected.add(entity);
+                }
+            }
+            assertEquals(new HashSet<>(expected), new HashSet<>(index.getEntities(area)));
+
+            int radius = random.nextInt(30);
+            expected.clear();
+            for (TestEntity entity : entities) {
+                if (entity.getPosition().distance(position) <= radius) {
+                    expected.add(entity);
+                }
+            }
+            List<TestEntity> found = index.getEntities(position, radius);
+            assertEquals(expected.size(), found.size());
+            assertEquals(new HashSet<>(expected), new HashSet<>(found));
+
+            int nearestDistance = Integer.MAX_VALUE;
+            for (TestEntity entity : entities) {
+                nearestDistance = Math.min(nearestDistance, entity.getPosition().distance(position));
+            }
+            TestEntity nearest = index.getNearestEntity(position);
+            assertTrue(entities.contains(nearest));
+            assertEquals(nearestDistance, nearest.getPosition().distance(position));
+        }
+    }
+
+    /**
+     * Gets a random position.
+     * @param random the random number generator
+     * @return the position
+     */
+    private static MapIndex randomPosition(final Random random) {
+        return new MapIndex(random.nextInt(SIZE), random.nextInt(SIZE), random.nextInt(LEVELS));
+    }
+}
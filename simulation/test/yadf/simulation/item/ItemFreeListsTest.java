@@ -0,0 +1,160 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.item;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import yadf.simulation.map.MapIndex;
+
+/**
+ * Tests for {@link ItemFreeLists}.
+ */
+public class ItemFreeListsTest {
+
+    /** A food item type. */
+    private static ItemType pork;
+
+    /** Another food item type. */
+    private static ItemType fish;
+
+    /**
+     * Load the item types.
+     * @throws Exception if the item types could not be loaded
+     */
+    @BeforeClass
+    public static void loadItemTypes() throws Exception {
+        ItemTypeManager itemTypeManager = ItemTypeManager.getInstance();
+        if (itemTypeManager.getItemTypes().isEmpty()) {
+            itemTypeManager.load();
+        }
+        pork = itemTypeManager.getItemType("Pork");
+        fish = itemTypeManager.getItemType("Fish");
+    }
+
+    /**
+     * The item that has been free the longest is found first, by type and by category.
+     */
+    @Test
+    public void testOldestFirst() {
+        ItemFreeLists freeLists = new ItemFreeLists();
+        Item first = new Item(new MapIndex(1, 1, 0), pork, null);
+        Item second = new Item(new MapIndex(2, 2, 0), pork, null);
+        Item third = new Item(new MapIndex(3, 3, 0), fish, null);
+        freeLists.update(first);
+        freeLists.update(second);
+        freeLists.update(third);
+        assertSame(first, freeLists.getItem("Pork", false));
+        assertSame(third, freeLists.getItem("Fish", false));
+        assertSame(first, freeLists.getItemFromCategory("Food", false));
+        assertSame(third, freeLists.getItem(Collections.singleton(fish)));
+        assertEquals(2, freeLists.getUnplacedItems("Pork").size());
+        assertTrue(freeLists.getUnplacedItems("Bread").isEmpty());
+
+        // Becoming free again puts an item at the back
+        first.setAvailable(false);
+        freeLists.update(first);
+        first.setAvailable(true);
+        freeLists.update(first);
+        assertSame(second, freeLists.getItem("Pork", false));
+    }
+
+    /**
+     * Items that are not available or have been deleted can't be found, and items come back when they are freed.
+     */
+    @Test
+    public void testAvailableRoundTrip() {
+        ItemFreeLists freeLists = new ItemFreeLists();
+        Item item = new Item(new MapIndex(1, 1, 0), pork, null);
+        freeLists.update(item);
+        item.setAvailable(false);
+        freeLists.update(item);
+        assertNull(freeLists.getItem("Pork", false));
+        assertNull(freeLists.getItemFromCategory("Food", false));
+        assertNull(freeLists.getNearestItem("Pork", new MapIndex()));
+        item.setAvailable(true);
+        freeLists.update(item);
+        assertSame(item, freeLists.getItem("Pork", false));
+        assertSame(item, freeLists.getNearestItem("Pork", new MapIndex()));
+        freeLists.remove(item);
+        assertNull(freeLists.getItem("Pork", false));
+        assertNull(freeLists.getNearestItemFromCategory("Food", new MapIndex()));
+    }
+
+    /**
+     * Placed and unplaced items are kept apart, and placing and unplacing an item moves it between them.
+     */
+    @Test
+    public void testPlacedRoundTrip() {
+        ItemFreeLists freeLists = new ItemFreeLists();
+        Item item = new Item(new MapIndex(1, 1, 0), pork, null);
+        item.setPlaced(true);
+        freeLists.update(item);
+        assertSame(item, freeLists.getItem("Pork", true));
+        assertNull(freeLists.getItem("Pork", false));
+        assertSame(item, freeLists.getItemFromCategory("Food", true));
+        assertNull(freeLists.getNearestItem("Pork", new MapIndex()));
+        item.setPlaced(false);
+        freeLists.update(item);
+        assertNull(freeLists.getItem("Pork", true));
+        assertSame(item, freeLists.getItem("Pork", false));
+        assertSame(item, freeLists.getNearestItem("Pork", new MapIndex()));
+    }
+
+    /**
+     * The nearest free item is found by type and by category, and it follows items that move.
+     */
+    @Test
+    public void testNearest() {
+        ItemFreeLists freeLists = new ItemFreeLists();
+        Item near = new Item(new MapIndex(2, 2, 0), pork, null);
+        Item far = new Item(new MapIndex(40, 40, 0), pork, null);
+        Item fishItem = new Item(new MapIndex(30, 30, 0), fish, null);
+        freeLists.update(near);
+        freeLists.update(far);
+        freeLists.update(fishItem);
+        MapIndex from = new MapIndex(35, 35, 0);
+        assertSame(far, freeLists.getNearestItem("Pork", from));
+        assertSame(fishItem, freeLists.getNearestItemFromCategory("Food", from));
+        near.setPosition(new MapIndex(34, 34, 0));
+        freeLists.moved(near);
+        assertSame(near, freeLists.getNearestItem("Pork", from));
+        assertSame(near, freeLists.getNearestItemFromCategory("Food", from));
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.item;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import yadf.simulation.map.MapIndex;
+
+/**
+ * Tests for {@link ItemQuantities}.
+ */
+public class ItemQuantitiesTest {
+
+    /** A food item type. */
+    private static ItemType pork;
+
+    /** Another food item type. */
+    private static ItemType fish;
+
+    /** A wood item type. */
+    private static ItemType log;
+
+    /**
+     * Load the item types.
+     * @throws Exception if the item types could not be loaded
+     */
+    @BeforeClass
+    public static void loadItemTypes() throws Exception {
+        ItemTypeManager itemTypeManager = ItemTypeManager.getInstance();
+        if (itemTypeManager.getItemTypes().isEmpty()) {
+            itemTypeManager.load();
+        }
+        pork = itemTypeManager.getItemType("Pork");
+        fish = itemTypeManager.getItemType("Fish");
+        log = itemTypeManager.getItemType("Log");
+    }
+
+    /**
+     * Nothing is counted to start with.
+     */
+    @Test
+    public void testEmpty() {
+        ItemQuantities quantities = new ItemQuantities();
+        assertEquals(0, quantities.getQuantity(pork));
+        assertEquals(0, quantities.getQuantity("Food"));
+    }
+
+    /**
+     * Items are counted by their type and by their category.
+     */
+    @Test
+    public void testAdd() {
+        ItemQuantities quantities = new ItemQuantities();
+        quantities.add(new Item(new MapIndex(), pork, null));
+        quantities.add(new Item(new MapIndex(), pork, null));
+        quantities.add(new Item(new MapIndex(), fish, null));
+        quantities.add(new Item(new MapIndex(), log, null));
+        assertEquals(2, quantities.getQuantity(pork));
+        assertEquals(1, quantities.getQuantity(fish));
+        assertEquals(1, quantities.getQuantity(log));
+        assertEquals(3, quantities.getQuantity("Food"));
+        assertEquals(1, quantities.getQuantity("Wood"));
+    }
+
+    /**
+     * Removing every item that was added takes all the quantities back to zero, and they can be counted again.
+     */
+    @Test
+    public void testRoundTrip() {
+        ItemQuantities quantities = new ItemQuantities();
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            items.add(new Item(new MapIndex(), i % 2 == 0 ? pork : fish, null));
+        }
+        for (Item item : items) {
+            quantities.add(item);
+        }
+        assertEquals(10, quantities.getQuantity("Food"));
+        for (Item item : items) {
+            quantities.remove(item);
+        }
+        assertEquals(0, quantities.getQuantity(pork));
+        assertEquals(0, quantities.getQuantity(fish));
+        assertEquals(0, quantities.getQuantity("Food"));
+        quantities.add(items.get(0));
+        assertEquals(1, quantities.getQuantity(pork));
+        assertEquals(1, quantities.getQuantity("Food"));
+    }
+
+    /**
+     * An item manager counts the items added to it and stops counting them when they are removed.
+     */
+    @Test
+    public void testItemManagerRoundTrip() {
+        ItemManager itemManager = new ItemManager();
+        Item item = new Item(new MapIndex(), log, null);
+        itemManager.addGameObject(item);
+        assertEquals(1, itemManager.getItemQuantity(log));
+        assertEquals(1, itemManager.getItemQuantity("Wood"));
+        itemManager.removeGameObject(item);
+        assertEquals(0, itemManager.getItemQuantity(log));
+        assertEquals(0, itemManager.getItemQuantity("Wood"));
+    }
+}
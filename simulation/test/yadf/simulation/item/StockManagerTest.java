@@ -0,0 +1,135 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.item;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import yadf.simulation.map.MapArea;
+import yadf.simulation.map.MapIndex;
+
+/**
+ * Tests that {@link StockManager} keeps track of which container each item is in.
+ */
+public class StockManagerTest {
+
+    /** The item type used for the items. */
+    private static ItemType pork;
+
+    /** The stock manager being tested. */
+    private StockManager stockManager;
+
+    /** A stockpile. */
+    private Stockpile stockpile;
+
+    /**
+     * Load the item types.
+     * @throws Exception if the item types could not be loaded
+     */
+    @BeforeClass
+    public static void loadItemTypes() throws Exception {
+        ItemTypeManager itemTypeManager = ItemTypeManager.getInstance();
+        if (itemTypeManager.getItemTypes().isEmpty()) {
+            itemTypeManager.load();
+        }
+        pork = itemTypeManager.getItemType("Pork");
+    }
+
+    /**
+     * Make a stock manager and a stockpile, the stockpile is not added to the stock manager.
+     */
+    @Before
+    public void setUp() {
+        stockManager = new StockManager(null);
+        stockpile = new Stockpile(new MapArea(new MapIndex(10, 10, 0), 4, 4), null);
+    }
+
+    /**
+     * An unstored item is placed and removed through the unstored items.
+     */
+    @Test
+    public void testUnstoredItem() {
+        Item item = new Item(new MapIndex(1, 1, 0), pork, null);
+        stockManager.addGameObject(item);
+        stockManager.setItemPlaced(item, true);
+        assertTrue(item.isPlaced());
+        assertSame(item, stockManager.getUnstoredItemManager().getItem("Pork", true));
+        stockManager.removeGameObject(item);
+        assertNull(stockManager.getUnstoredItemManager().getGameObject(item.getId()));
+        assertNull(stockManager.getUnstoredItemManager().getItem("Pork", true));
+    }
+
+    /**
+     * An item that moves from the unstored items to a stockpile is placed and removed through the stockpile.
+     */
+    @Test
+    public void testStoredItem() {
+        stockManager.getStockpileManager().addGameObject(stockpile);
+        Item item = new Item(new MapIndex(1, 1, 0), pork, null);
+        stockManager.addGameObject(item);
+        stockManager.getUnstoredItemManager().removeGameObject(item);
+        item.setPosition(new MapIndex(10, 10, 0));
+        stockpile.addGameObject(item);
+
+        stockManager.setItemPlaced(item, true);
+        assertSame(item, stockpile.getItem("Pork", true));
+        assertNull(stockManager.getUnstoredItemManager().getItem("Pork", true));
+        stockManager.setItemPlaced(item, false);
+        assertSame(item, stockpile.getItem("Pork", false));
+        assertNull(stockpile.getItem("Pork", true));
+    }
+
+    /**
+     * Items that are already in a stockpile when it is added are tracked, and they stop being tracked when the
+     * stockpile is removed.
+     */
+    @Test
+    public void testStockpileAddedAndRemoved() {
+        Item item = new Item(new MapIndex(10, 10, 0), pork, null);
+        stockpile.addGameObject(item);
+        stockManager.getStockpileManager().addGameObject(stockpile);
+        stockManager.setItemPlaced(item, true);
+        assertSame(item, stockpile.getItem("Pork", true));
+
+        stockManager.getStockpileManager().removeGameObject(stockpile);
+        stockManager.setItemPlaced(item, false);
+        // The stockpile is no longer told about the item
+        assertSame(item, stockpile.getItem("Pork", true));
+        assertFalse(item.isPlaced());
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import yadf.misc.MyRandom;
+
+/**
+ * Tests for {@link ChunkGraph}, the long paths it plans are followed a part at a time and checked against the
+ * cheapest path.
+ */
+public class ChunkGraphTest {
+
+    /** The size of the test map. */
+    private static final MapIndex MAP_SIZE = new MapIndex(128, 128, 16);
+
+    /** The most a path planned on the chunk graph can cost compared to the cheapest path. */
+    private static final double MAX_COST_RATIO = 1.5;
+
+    /** The map. */
+    private RegionMap map;
+
+    /** The chunk graph being tested. */
+    private ChunkGraph chunkGraph;
+
+    /** The planner for the searches within chunks. */
+    private final PathPlanner planner = new PathPlanner();
+
+    /**
+     * Generate the map and build the graph.
+     */
+    @Before
+    public void setUp() {
+        MyRandom.getInstance().setSeed(5);
+        map = new RegionMap();
+        map.generateMap(MAP_SIZE);
+        chunkGraph = new ChunkGraph(map);
+        chunkGraph.update();
+    }
+
+    /**
+     * Only paths between chunks that are far enough apart are long.
+     */
+    @Test
+    public void testIsLongPath() {
+        assertFalse(chunkGraph.isLongPath(new MapIndex(0, 0, 0), new MapIndex(63, 63, 0)));
+        assertTrue(chunkGraph.isLongPath(new MapIndex(0, 0, 0), new MapIndex(64, 0, 0)));
+        assertTrue(chunkGraph.isLongPath(new MapIndex(0, 0, 0), new MapIndex(0, 64, 0)));
+        assertTrue(chunkGraph.isLongPath(new MapIndex(100, 100, 0), new MapIndex(20, 90, 0)));
+    }
+
+    /**
+     * Long paths get to the goal, only take steps between adjacent nodes and don't cost much more than the cheapest
+     * path.
+     */
+    @Test
+    public void testLongPaths() {
+        checkRandomPaths(new Random(5), 0, MAP_SIZE.x - 1);
+    }
+
+    /**
+     * A node that has been walled in can't be reached.
+     */
+    @Test
+    public void testNoPath() {
+        WalkableNode start = getNode(10, 10);
+        WalkableNode goal = getNode(110, 110);
+        while (!goal.adjacencies.isEmpty()) {
+            MapIndex wall = new MapIndex(goal.adjacencies.get(0));
+            map.setBlock(wall, BlockType.WALL);
+            markDirty(wall);
+        }
+        chunkGraph.update();
+        assertNull(chunkGraph.findPath(planner, start, goal));
+    }
+
+    /**
+     * After a wall is built across the map, leaving a gap, the graph is rebuilt around the wall and paths go through
+     * the gap.
+     */
+    @Test
+    public void testPathsAfterChanges() {
+        int gapY = 100;
+        for (int y = 0; y < MAP_SIZE.y; y++) {
+            if (y == gapY) {
+                continue;
+            }
+            for (int z = 0; z < MAP_SIZE.z; z++) {
+                MapIndex wall = new MapIndex(64, y, z);
+                map.setBlock(wall, BlockType.WALL);
+                markDirty(wall);
+            }
+        }
+        chunkGraph.update();
+
+        Random random = new Random(6);
+        for (int i = 0; i < 10; i++) {
+            WalkableNode start = getNode(random.nextInt(32), random.nextInt(MAP_SIZE.y));
+            WalkableNode goal = getNode(96 + random.nextInt(32), random.nextInt(MAP_SIZE.y));
+            if (!map.isReachable(start, goal)) {
+                continue;
+            }
+            boolean throughGap = false;
+            for (MapIndex position : followPath(start, goal)) {
+                if (position.x == 64) {
+                    assertEquals(gapY, position.y);
+                    throughGap = true;
+                }
+            }
+            assertTrue(throughGap);
+        }
+        checkRandomPaths(random, 65, MAP_SIZE.x - 1);
+    }
+
+    /**
+     * Check long paths between random positions in a range of columns.
+     * @param random the random number generator
+     * @param minX the lowest x position of the starts and goals
+     * @param maxX the highest x position of the starts and goals
+     */
+    private void checkRandomPaths(final Random random, final int minX, final int maxX) {
+        int pathCount = 0;
+        while (pathCount < 20) {
+            WalkableNode start = getNode(minX + random.nextInt(maxX - minX + 1), random.nextInt(MAP_SIZE.y));
+            WalkableNode goal = getNode(minX + random.nextInt(maxX - minX + 1), random.nextInt(MAP_SIZE.y));
+            if (!chunkGraph.isLongPath(start, goal) || !map.isReachable(start, goal)) {
+                continue;
+            }
+            pathCount++;
+            List<MapIndex> path = followPath(start, goal);
+            int cost = 0;
+            MapIndex previous = start;
+            for (MapIndex position : path) {
+                cost += PathPlanner.getMovementCost(previous, position);
+                previous = position;
+            }
+            DistanceField field = planner.findDistanceField(Collections.singletonList(goal), new MapIndex(0, 0, 0),
+                    MAP_SIZE);
+            int cheapestCost = field.getDistance(start);
+            assertTrue("Path from " + start + " to " + goal + " costs " + cost + ", the cheapest costs "
+                    + cheapestCost, cost <= cheapestCost * MAX_COST_RATIO);
+        }
+    }
+
+    /**
+     * Follow the paths planned by the chunk graph, a part at a time, from a start to a goal.
+     * @param start the start
+     * @param goal the goal
+     * @return the positions walked through in order, not including the start
+     */
+    private List<MapIndex> followPath(final WalkableNode start, final WalkableNode goal) {
+        List<MapIndex> walked = new ArrayList<>();
+        WalkableNode current = start;
+        for (int part = 0; current != goal; part++) {
+            assertTrue("Too many parts from " + start + " to " + goal, part < 50);
+            List<MapIndex> path = chunkGraph.isLongPath(current, goal) ? chunkGraph.findPath(planner, current, goal)
+                    : planner.findPath(current, goal);
+            assertNotNull(path);
+            assertFalse(path.isEmpty());
+            for (int i = path.size() - 1; i >= 0; i--) {
+                WalkableNode next = map.getWalkableNode(path.get(i));
+                assertTrue("Step from " + current + " to " + path.get(i), current.adjacencies.contains(next));
+                walked.add(next);
+                current = next;
+            }
+        }
+        return walked;
+    }
+
+    /**
+     * Mark the chunks around a changed block as dirty, like the map does.
+     * @param position the position of the block
+     */
+    private void markDirty(final MapIndex position) {
+        chunkGraph.markDirty(position);
+        chunkGraph.markDirty(position.add(0, 0, 1));
+    }
+
+    /**
+     * Gets the walkable node on the surface of a column.
+     * @param x the x position
+     * @param y the y position
+     * @return the node
+     */
+    private WalkableNode getNode(final int x, final int y) {
+        WalkableNode node = map.getWalkableNode(new MapIndex(x, y, map.getHeight(x, y)));
+        assertNotNull(node);
+        return node;
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import yadf.misc.MyRandom;
+
+/**
+ * Tests for {@link ConnectedComponents}, through {@link RegionMap#isReachable(MapIndex, MapIndex)}.
+ */
+public class ConnectedComponentsTest {
+
+    /**
+     * Walling a node in splits it off into a component of its own, and opening one of the walls joins it back up.
+     */
+    @Test
+    public void testSplitAndJoin() {
+        RegionMap map = generateMap(1, new MapIndex(32, 32, 16));
+        MapIndex far = getSurfacePosition(map, 2, 2);
+        MapIndex position = getSurfacePosition(map, 16, 16);
+        assertTrue(map.isReachable(position, far));
+
+        // Wall up everything around the position until it can't go anywhere
+        List<MapIndex> walls = new ArrayList<>();
+        WalkableNode node = map.getWalkableNode(position);
+        while (!node.adjacencies.isEmpty()) {
+            MapIndex wall = new MapIndex(node.adjacencies.get(0));
+            map.setBlock(wall, BlockType.WALL);
+            walls.add(wall);
+        }
+        assertFalse(map.isReachable(position, far));
+        assertFalse(map.isReachable(far, position));
+        checkComponents(map);
+
+        // The first wall was next to the position and connected to the rest of the map
+        map.setBlock(walls.get(0), BlockType.EMPTY);
+        assertTrue(map.isReachable(position, far));
+        checkComponents(map);
+    }
+
+    /**
+     * Cutting a big map in half is too big to flood, so every node is labelled again, which still gives the right
+     * components.
+     */
+    @Test
+    public void testBigSplit() {
+        MapIndex mapSize = new MapIndex(128, 128, 16);
+        RegionMap map = generateMap(2, mapSize);
+        MapIndex left = getSurfacePosition(map, 10, 64);
+        MapIndex right = getSurfacePosition(map, 118, 64);
+        assertTrue(map.isReachable(left, right));
+
+        // Fill a column of blocks all the way across the map
+        for (int y = 0; y < mapSize.y; y++) {
+            for (int z = 0; z < mapSize.z; z++) {
+                map.setBlock(new MapIndex(64, y, z), BlockType.WALL);
+            }
+        }
+        assertFalse(map.isReachable(left, right));
+        checkComponents(map);
+    }
+
+    /**
+     * The components are right after lots of random changes to the blocks near the surface.
+     */
+    @Test
+    public void testRandomChanges() {
+        MapIndex mapSize = new MapIndex(48, 48, 16);
+        RegionMap map = generateMap(3, mapSize);
+        Random random = new Random(3);
+        BlockType[] types = {BlockType.EMPTY, BlockType.WALL, BlockType.WALL, BlockType.RAMP, BlockType.MINE};
+        for (int i = 1; i <= 3000; i++) {
+            int x = random.nextInt(mapSize.x);
+            int y = random.nextInt(mapSize.y);
+            int z = map.getHeight(x, y) + random.nextInt(3) - 1;
+            if (z >= 0 && z < mapSize.z) {
+                map.setBlock(new MapIndex(x, y, z), types[random.nextInt(types.length)]);
+            }
+            if (i % 500 == 0) {
+                checkComponents(map);
+            }
+        }
+    }
+
+    /**
+     * Check the components of the map against a search from every node.
+     * @param map the map
+     */
+    private static void checkComponents(final RegionMap map) {
+        List<WalkableNode> nodes = map.getWalkableNodes(new MapIndex(0, 0, 0), map.getMapSize());
+        Map<WalkableNode, Integer> components = new HashMap<>();
+        List<WalkableNode> firstNodes = new ArrayList<>();
+        Deque<WalkableNode> open = new ArrayDeque<>();
+        for (WalkableNode node : nodes) {
+            if (components.containsKey(node)) {
+                continue;
+            }
+            int component = firstNodes.size();
+            firstNodes.add(node);
+            components.put(node, component);
+            open.add(node);
+            while (!open.isEmpty()) {
+                for (WalkableNode adjNode : open.poll().adjacencies) {
+                    if (!components.containsKey(adjNode)) {
+                        components.put(adjNode, component);
+                        open.add(adjNode);
+                    }
+                }
+            }
+        }
+        for (WalkableNode node : nodes) {
+            assertTrue(map.isReachable(node, firstNodes.get(components.get(node))));
+        }
+        for (int i = 0; i < firstNodes.size(); i++) {
+            for (int j = i + 1; j < firstNodes.size(); j++) {
+                assertFalse(map.isReachable(firstNodes.get(i), firstNodes.get(j)));
+            }
+        }
+    }
+
+    /**
+     * Generate a map.
+     * @param seed the random seed
+     * @param mapSize the size of the map
+     * @return the map
+     */
+    private static RegionMap generateMap(final long seed, final MapIndex mapSize) {
+        MyRandom.getInstance().setSeed(seed);
+        RegionMap map = new RegionMap();
+        map.generateMap(mapSize);
+        return map;
+    }
+
+    /**
+     * Gets the walkable position on the surface of a column.
+     * @param map the map
+     * @param x the x position
+     * @param y the y position
+     * @return the position
+     */
+    private static MapIndex getSurfacePosition(final RegionMap map, final int x, final int y) {
+        MapIndex position = new MapIndex(x, y, map.getHeight(x, y));
+        assertEquals(position, map.getWalkableNode(position));
+        return position;
+    }
+}
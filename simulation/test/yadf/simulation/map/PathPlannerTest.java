@@ -0,0 +1,129 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import yadf.misc.MyRandom;
+
+/**
+ * Tests that jump point search and plain A* in {@link PathPlanner} both find the cheapest paths.
+ */
+public class PathPlannerTest {
+
+    /** The size of the test map. */
+    private static final MapIndex MAP_SIZE = new MapIndex(96, 96, 16);
+
+    /** The map. */
+    private static RegionMap map;
+
+    /**
+     * Generate the map.
+     */
+    @BeforeClass
+    public static void generateMap() {
+        MyRandom.getInstance().setSeed(4);
+        map = new RegionMap();
+        map.generateMap(MAP_SIZE);
+    }
+
+    /**
+     * Between random positions, jump point search and plain A* find paths that cost the same as each other and as the
+     * cheapest path worked out by a full search from the goal.
+     */
+    @Test
+    public void testPathCostsMatch() {
+        Random random = new Random(4);
+        PathPlanner planner = new PathPlanner();
+        MapIndex fieldMin = new MapIndex(0, 0, 0);
+        int pathCount = 0;
+        while (pathCount < 200) {
+            WalkableNode start = getRandomNode(random);
+            WalkableNode goal = getRandomNode(random);
+            if (start == goal || !map.isReachable(start, goal)) {
+                continue;
+            }
+            pathCount++;
+            List<WalkableNode> goals = Collections.singletonList(goal);
+            List<MapIndex> jumpPointPath = planner.findPath(start, goals, true);
+            assertNotNull(jumpPointPath);
+            int jumpPointCost = getCost(start, goal, jumpPointPath);
+            List<MapIndex> plainPath = planner.findPath(start, goals, false);
+            assertNotNull(plainPath);
+            int plainCost = getCost(start, goal, plainPath);
+            DistanceField field = planner.findDistanceField(goals, fieldMin, MAP_SIZE);
+
+            assertEquals("Path from " + start + " to " + goal, plainCost, jumpPointCost);
+            assertEquals("Path from " + start + " to " + goal, field.getDistance(start), jumpPointCost);
+        }
+    }
+
+    /**
+     * Gets the walkable node on the surface of a random column.
+     * @param random the random number generator
+     * @return the node
+     */
+    private static WalkableNode getRandomNode(final Random random) {
+        int x = random.nextInt(MAP_SIZE.x);
+        int y = random.nextInt(MAP_SIZE.y);
+        return map.getWalkableNode(new MapIndex(x, y, map.getHeight(x, y)));
+    }
+
+    /**
+     * Gets the cost of a path, checking that every step is between adjacent nodes.
+     * @param start the start
+     * @param goal the goal
+     * @param path the path, from the goal back to (but not including) the start
+     * @return the cost
+     */
+    private static int getCost(final WalkableNode start, final WalkableNode goal, final List<MapIndex> path) {
+        assertEquals(goal, path.get(0));
+        int cost = 0;
+        WalkableNode previous = start;
+        for (int i = path.size() - 1; i >= 0; i--) {
+            WalkableNode next = map.getWalkableNode(path.get(i));
+            assertTrue(previous.adjacencies.contains(next));
+            cost += PathPlanner.getMovementCost(previous, next);
+            previous = next;
+        }
+        return cost;
+    }
+}
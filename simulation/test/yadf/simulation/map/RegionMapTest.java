@@ -0,0 +1,164 @@
+/**
+ * yadf
+ * 
+ * https://sourceforge.net/projects/yadf
+ * 
+ * Ben Smith (bensmith87@gmail.com)
+ * 
+ * yadf is placed under the BSD license.
+ * 
+ * Copyright (c) 2012-2013, Ben Smith All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ * 
+ * - Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ * disclaimer.
+ * 
+ * - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the following
+ * disclaimer in the documentation and/or other materials provided with the distribution.
+ * 
+ * - Neither the name of the yadf project nor the names of its contributors may be used to endorse or promote products
+ * derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package yadf.simulation.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import yadf.misc.MyRandom;
+
+/**
+ * Tests that the walkable nodes of a {@link RegionMap} and their adjacencies match the blocks, when the map is
+ * generated and after it changes.
+ */
+public class RegionMapTest {
+
+    /** The size of the test map. */
+    private static final MapIndex MAP_SIZE = new MapIndex(32, 32, 16);
+
+    /** The map. */
+    private RegionMap map;
+
+    /**
+     * Generate the same map for every test.
+     */
+    @Before
+    public void setUp() {
+        MyRandom.getInstance().setSeed(1);
+        map = new RegionMap();
+        map.generateMap(MAP_SIZE);
+    }
+
+    /**
+     * A new map has a walkable node everywhere that can be stood in, and nowhere else.
+     */
+    @Test
+    public void testNewMap() {
+        checkWalkableNodes();
+    }
+
+    /**
+     * The nodes are repaired locally as blocks are mined, built and channelled, and they still match the blocks.
+     */
+    @Test
+    public void testChangedMap() {
+        Random random = new Random(2);
+        BlockType[] types = {BlockType.EMPTY, BlockType.WALL, BlockType.RAMP, BlockType.STAIR, BlockType.MINE};
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(MAP_SIZE.x);
+            int y = random.nextInt(MAP_SIZE.y);
+            int z = map.getHeight(x, y) + random.nextInt(4) - 2;
+            if (z < 0 || z >= MAP_SIZE.z) {
+                continue;
+            }
+            map.setBlock(new MapIndex(x, y, z), types[random.nextInt(types.length)]);
+            if (i % 250 == 0) {
+                checkWalkableNodes();
+            }
+        }
+        checkWalkableNodes();
+    }
+
+    /**
+     * Check that there is a walkable node at every position that can be stood in and is above a block that can be
+     * stood on, that they are found by the column queries, and that they are adjacent to the right nodes.
+     */
+    private void checkWalkableNodes() {
+        int expectedCount = 0;
+        Set<Integer> ids = new HashSet<>();
+        for (int x = 0; x < MAP_SIZE.x; x++) {
+            for (int y = 0; y < MAP_SIZE.y; y++) {
+                for (int z = 1; z <= MAP_SIZE.z; z++) {
+                    MapIndex position = new MapIndex(x, y, z);
+                    WalkableNode node = map.getWalkableNode(position);
+                    if (map.getBlock(position).isStandIn && map.getBlock(x, y, z - 1).isStandOn) {
+                        assertNotNull("No node at " + position, node);
+                        assertEquals(position, node);
+                        assertTrue("Duplicate id " + node.id, ids.add(node.id));
+                        checkAdjacencies(node);
+                        expectedCount++;
+                    } else {
+                        assertNull("Unexpected node at " + position, node);
+                    }
+                }
+            }
+        }
+        assertEquals(expectedCount, map.getWalkableNodes(new MapIndex(0, 0, 0), MAP_SIZE).size());
+
+        // A smaller box only finds the nodes inside it
+        MapIndex min = new MapIndex(4, 6, 2);
+        MapIndex max = new MapIndex(20, 13, 9);
+        List<WalkableNode> boxNodes = map.getWalkableNodes(min, max);
+        int boxCount = 0;
+        for (WalkableNode node : map.getWalkableNodes(new MapIndex(0, 0, 0), MAP_SIZE)) {
+            if (node.x >= min.x && node.x <= max.x && node.y >= min.y && node.y <= max.y && node.z >= min.z
+                    && node.z <= max.z) {
+                assertTrue(boxNodes.contains(node));
+                boxCount++;
+            }
+        }
+        assertEquals(boxCount, boxNodes.size());
+    }
+
+    /**
+     * Check that a node is adjacent to exactly the nodes around it that can be walked or climbed to.
+     * @param node the node
+     */
+    private void checkAdjacencies(final WalkableNode node) {
+        Set<WalkableNode> expected = new HashSet<>();
+        for (WalkableNode otherNode : map.getWalkableNodes(node.add(-1, -1, -1), node.add(1, 1, 1))) {
+            if (otherNode == node) {
+                continue;
+            }
+            int diffZ = node.z - otherNode.z;
+            if (diffZ == 0 || (diffZ == 1 && map.getBlock(otherNode).isClimb)
+                    || (diffZ == -1 && map.getBlock(node).isClimb)) {
+                expected.add(otherNode);
+            }
+        }
+        assertEquals("Adjacencies of " + node, expected, new HashSet<>(node.adjacencies));
+        assertEquals("Duplicate adjacencies of " + node, expected.size(), node.adjacencies.size());
+        for (WalkableNode adjNode : node.adjacencies) {
+            assertTrue(adjNode == map.getWalkableNode(adjNode));
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package yadf.ui.gdx;
 
+import yadf.simulation.map.RegionMap;
+import yadf.simulation.map.ThreadPoolTaskRunner;
+
 import com.badlogic.gdx.backends.android.AndroidApplication;
 import com.badlogic.gdx.backends.android.AndroidApplicationConfiguration;
 
@@ -8,6 +11,7 @@ public class MainActivity extends AndroidApplication {
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        RegionMap.setTaskRunner(new ThreadPoolTaskRunner());
 
         AndroidApplicationConfiguration cfg = new AndroidApplicationConfiguration();
         cfg.useGL20 = false;
@@ -1,5 +1,7 @@
 package yadf.ui.gdx;
 
+import yadf.simulation.map.RegionMap;
+import yadf.simulation.map.ThreadPoolTaskRunner;
 import yadf.ui.gdx.YadfGame;
 
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
@@ -8,6 +10,7 @@ import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 public class Main {
 
     public static void main(String[] args) {
+        RegionMap.setTaskRunner(new ThreadPoolTaskRunner());
         LwjglApplicationConfiguration cfg = new LwjglApplicationConfiguration();
         cfg.title = "Ben's Burrows";
         cfg.useGL20 = false;
@@ -1,5 +1,7 @@
 package yadf.ui.gdx.client;
 
+import yadf.simulation.map.RegionMap;
+import yadf.simulation.map.SameThreadTaskRunner;
 import yadf.ui.gdx.YadfGame;
 
 import com.badlogic.gdx.ApplicationListener;
@@ -15,6 +17,8 @@ public class GwtLauncher extends GwtApplication {
 
     @Override
     public ApplicationListener getApplicationListener() {
+        // There are no threads in the browser
+        RegionMap.setTaskRunner(new SameThreadTaskRunner());
         return new YadfGame();
     }
 }
\ No newline at end of file
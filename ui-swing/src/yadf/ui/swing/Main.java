@@ -33,6 +33,9 @@ package yadf.ui.swing;
 
 import javax.swing.JApplet;
 
+import yadf.simulation.map.RegionMap;
+import yadf.simulation.map.ThreadPoolTaskRunner;
+
 /**
  * The main class, launches the main window.
  */
@@ -47,6 +50,7 @@ public final class Main extends JApplet {
      * @param args the arguments
      */
     public static void main(final String[] args) {
+        RegionMap.setTaskRunner(new ThreadPoolTaskRunner());
         try {
             new MainWindow();
         } catch (Exception e) {
@@ -56,6 +60,7 @@ public final class Main extends JApplet {
 
     @Override
     public void init() {
+        RegionMap.setTaskRunner(new ThreadPoolTaskRunner());
         try {
             new MainWindow();
         } catch (Exception e) {